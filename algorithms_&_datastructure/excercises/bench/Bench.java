@@ -0,0 +1,269 @@
+package com.jr.test.algorithms.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 一个只依赖JDK的微基准测试工具，按JMH的方式组织：
+ * <p>
+ * 1. 每个Case默认在独立的子JVM(fork)中运行，避免不同Case之间互相影响JIT的profile；
+ * 2. 先做若干轮预热，再做若干轮测量，每轮至少运行iterationMillis毫秒(只统计run的耗时，prepare不计时)；
+ *    单次操作很短时Task在一次run中批量执行operations()次操作；
+ * 3. 输出每次操作的平均耗时和误差，以及测量期间的GC次数、GC耗时和当前线程每次操作分配的字节数，
+ *    Task.info()不为null时附在这一行的最后。
+ * <p>
+ * 命令行参数：
+ * <pre>
+ * -f N        fork的子JVM个数，0表示在当前JVM中运行，默认1
+ * -wi N       预热轮数，默认3
+ * -i N        测量轮数，默认5
+ * -t MS       每轮的最短时间，默认500
+ * -e REGEX    只运行名字匹配的Case
+ * -p k=v1,v2  基准测试自己的参数，例如 -p size=100,10000
+ * </pre>
+ * 子JVM继承当前JVM的启动参数(例如-Xmx)。
+ */
+public class Bench {
+
+    /**
+     * 一个基准测试。prepare在每次run之前调用，不计时
+     */
+    public interface Task {
+
+        default void prepare() {
+        }
+
+        /**
+         * 返回值会被累加到一个volatile变量中，防止被JIT当作死代码消除
+         */
+        long run();
+
+        /**
+         * 每次run包含的操作次数，单次操作太短时在run中批量执行，避免计时本身的开销
+         */
+        default int operations() {
+            return 1;
+        }
+
+        /**
+         * 附加在结果最后的说明，例如数据结构的大小
+         */
+        default String info() {
+            return null;
+        }
+    }
+
+    public static class Case {
+
+        private final String name;
+        private final Supplier<? extends Task> factory;
+
+        Case(String name, Supplier<? extends Task> factory) {
+            this.name = name;
+            this.factory = factory;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static Case of(String name, Supplier<? extends Task> factory) {
+        return new Case(name, factory);
+    }
+
+    public static class Options {
+
+        private final String[] args;
+        private int forks = 1;
+        private int warmupIterations = 3;
+        private int iterations = 5;
+        private long iterationMillis = 500;
+        private Pattern include;
+        private String child;
+        private final Map<String, String> params = new HashMap<>();
+
+        Options(String[] args) {
+            this.args = args;
+        }
+
+        public String param(String key, String defaultValue) {
+            return params.getOrDefault(key, defaultValue);
+        }
+
+        public String[] strings(String key, String defaultValue) {
+            return param(key, defaultValue).split(",");
+        }
+
+        public int[] ints(String key, String defaultValue) {
+            return Arrays.stream(strings(key, defaultValue)).mapToInt(s -> (int) Double.parseDouble(s)).toArray();
+        }
+    }
+
+    public static Options options(String[] args) {
+        Options o = new Options(args);
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-f":
+                    o.forks = Integer.parseInt(args[++i]);
+                    break;
+                case "-wi":
+                    o.warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    o.iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    o.iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-e":
+                    o.include = Pattern.compile(args[++i]);
+                    break;
+                case "-p":
+                    String[] kv = args[++i].split("=", 2);
+                    o.params.put(kv[0], kv[1]);
+                    break;
+                case "-child":
+                    o.child = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + arg);
+            }
+        }
+        return o;
+    }
+
+    private static volatile long sink;
+
+    /**
+     * @param mainClass 基准测试的入口类，fork子JVM时使用
+     */
+    public static void run(Class<?> mainClass, Options o, List<Case> cases) throws Exception {
+        if (null != o.child) {
+            for (Case c : cases) {
+                if (c.name.equals(o.child)) {
+                    measure(c, o);
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("no such case: " + o.child);
+        }
+
+        System.out.println(header());
+        for (Case c : cases) {
+            if (null != o.include && !o.include.matcher(c.name).find()) continue;
+
+            if (o.forks == 0) {
+                measure(c, o);
+                continue;
+            }
+            for (int f = 0; f < o.forks; f++) {
+                fork(mainClass, o, c);
+            }
+        }
+    }
+
+    private static void fork(Class<?> mainClass, Options o, Case c) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + "/bin/java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass.getName());
+        command.addAll(Arrays.asList(o.args));
+        command.add("-child");
+        command.add(c.name);
+
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0)
+            System.out.println(String.format("%-56s FAILED (exit %d)", c.name, process.exitValue()));
+    }
+
+    private static void measure(Case c, Options o) {
+        try {
+            Task task = c.factory.get();
+            for (int i = 0; i < o.warmupIterations; i++) {
+                iteration(task, o.iterationMillis);
+            }
+
+            System.gc();
+            long gcCount = gcCount(), gcTime = gcTime(), allocated = allocatedBytes();
+            long totalOps = 0;
+            double[] nsPerOp = new double[o.iterations];
+            for (int i = 0; i < o.iterations; i++) {
+                long[] r = iteration(task, o.iterationMillis);
+                nsPerOp[i] = (double) r[0] / r[1];
+                totalOps += r[1];
+            }
+            gcCount = gcCount() - gcCount;
+            gcTime = gcTime() - gcTime;
+            allocated = allocated < 0 ? -1 : allocatedBytes() - allocated;
+
+            double mean = Arrays.stream(nsPerOp).average().orElse(0);
+            double variance = Arrays.stream(nsPerOp).map(x -> (x - mean) * (x - mean)).sum()
+                    / Math.max(1, nsPerOp.length - 1);
+            double error = nsPerOp.length > 1 ? Math.sqrt(variance / nsPerOp.length) : 0;
+
+            String info = task.info();
+            System.out.println(String.format("%-56s %16.1f %12.1f %10d %8d %8d %14.1f",
+                    c.name, mean, error, totalOps, gcCount, gcTime, allocated < 0 ? Double.NaN : (double) allocated / totalOps)
+                    + (null == info ? "" : "  " + info));
+        } catch (Throwable e) {
+            System.out.println(String.format("%-56s FAILED (%s)", c.name, e));
+        }
+    }
+
+    private static String header() {
+        return String.format("%-56s %16s %12s %10s %8s %8s %14s",
+                "Benchmark", "ns/op", "error", "ops", "gc", "gc ms", "alloc B/op");
+    }
+
+    // 返回{run的总耗时, 调用次数}
+    private static long[] iteration(Task task, long millis) {
+        long target = millis * 1_000_000L, spent = 0, ops = 0, acc = 0;
+        while (spent < target || ops == 0) {
+            task.prepare();
+            long start = System.nanoTime();
+            acc += task.run();
+            spent += System.nanoTime() - start;
+            ops++;
+        }
+        sink += acc;
+        return new long[]{spent, ops * task.operations()};
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    // 只统计当前线程的分配，线程池中的分配不包含在内；不支持时返回-1
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.jr.test.algorithms.bench;
+
+import com.jr.test.algorithms.trees.AVLTree;
+import com.jr.test.algorithms.trees.ConcurrentSkipList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 多线程读写有序Map的吞吐量，结果为所有线程合计的每次操作平均耗时(即吞吐量的倒数)。
+ * <p>
+ * 参数：-p map=...，-p threads=1,2,4,...,64，-p write=0,10,50(写操作的百分比，一半put一半remove)，-p size=...(key的范围)。
+ * 每个Case开始前填入一半的key；每次run由threads个线程各执行OPS_PER_THREAD次随机操作。
+ * synchronizedAvl是用一把全局锁包装的AVLTree，rwLockAvl用读写锁包装，ConcurrentSkipListMap作为基线。
+ * <pre>
+ * java com.jr.test.algorithms.bench.ConcurrentMapBenchmark -p threads=1,4,16,64 -p write=10
+ * </pre>
+ */
+public class ConcurrentMapBenchmark {
+
+    private static final int OPS_PER_THREAD = 10_000;
+
+    /**
+     * 各种Map实现的统一接口
+     */
+    interface IntMap {
+        Integer get(Integer key);
+
+        void put(Integer key, Integer value);
+
+        void remove(Integer key);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bench.Options o = Bench.options(args);
+
+        Map<String, Supplier<IntMap>> maps = maps();
+        String[] names = o.strings("map", String.join(",", maps.keySet()));
+
+        List<Bench.Case> cases = new ArrayList<>();
+        for (String name : names) {
+            Supplier<IntMap> map = maps.get(name);
+            if (null == map) throw new IllegalArgumentException("unknown map: " + name);
+
+            for (int size : o.ints("size", "1e6")) {
+                for (int write : o.ints("write", "0,10,50")) {
+                    for (int threads : o.ints("threads", "1,2,4,8,16,32,64")) {
+                        String caseName = name + ":w" + write + ":t" + threads + ":" + size;
+                        cases.add(Bench.of(caseName, () -> new MapTask(map.get(), size, write, threads)));
+                    }
+                }
+            }
+        }
+
+        Bench.run(ConcurrentMapBenchmark.class, o, cases);
+    }
+
+    private static Map<String, Supplier<IntMap>> maps() {
+        Map<String, Supplier<IntMap>> map = new LinkedHashMap<>();
+        map.put("skipList", () -> {
+            ConcurrentSkipList<Integer, Integer> m = new ConcurrentSkipList<>();
+            return new IntMap() {
+                @Override
+                public Integer get(Integer key) {
+                    return m.get(key);
+                }
+
+                @Override
+                public void put(Integer key, Integer value) {
+                    m.put(key, value);
+                }
+
+                @Override
+                public void remove(Integer key) {
+                    m.remove(key);
+                }
+            };
+        });
+        map.put("synchronizedAvl", () -> wrap(Collections.synchronizedNavigableMap(new AVLTree<>())));
+        map.put("rwLockAvl", () -> {
+            AVLTree<Integer, Integer> m = new AVLTree<>();
+            ReadWriteLock lock = new ReentrantReadWriteLock();
+            return new IntMap() {
+                @Override
+                public Integer get(Integer key) {
+                    lock.readLock().lock();
+                    try {
+                        return m.get(key);
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+
+                @Override
+                public void put(Integer key, Integer value) {
+                    lock.writeLock().lock();
+                    try {
+                        m.put(key, value);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+
+                @Override
+                public void remove(Integer key) {
+                    lock.writeLock().lock();
+                    try {
+                        m.remove(key);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+            };
+        });
+        map.put("jdkConcurrentSkipListMap", () -> wrap(new ConcurrentSkipListMap<>()));
+        return map;
+    }
+
+    private static IntMap wrap(NavigableMap<Integer, Integer> m) {
+        return new IntMap() {
+            @Override
+            public Integer get(Integer key) {
+                return m.get(key);
+            }
+
+            @Override
+            public void put(Integer key, Integer value) {
+                m.put(key, value);
+            }
+
+            @Override
+            public void remove(Integer key) {
+                m.remove(key);
+            }
+        };
+    }
+
+    /**
+     * 线程池在创建Task时启动，每次run提交threads个任务并等待全部完成
+     */
+    private static class MapTask implements Bench.Task {
+
+        private final IntMap map;
+        private final int size, write, threads;
+        private final ExecutorService pool;
+        private final Integer[] keys;
+
+        MapTask(IntMap map, int size, int write, int threads) {
+            this.map = map;
+            this.size = size;
+            this.write = write;
+            this.threads = threads;
+            this.pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            // key预先装箱，避免把Integer.valueOf的开销算进去
+            this.keys = new Integer[size];
+            for (int i = 0; i < size; i++) keys[i] = i;
+            for (int i = 0; i < size; i += 2) map.put(keys[i], keys[i]);
+        }
+
+        @Override
+        public long run() {
+            List<Future<Long>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(this::work));
+            }
+
+            long acc = 0;
+            try {
+                for (Future<Long> future : futures) acc += future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return acc;
+        }
+
+        private long work() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long acc = 0;
+            for (int i = 0; i < OPS_PER_THREAD; i++) {
+                Integer key = keys[random.nextInt(size)];
+                int op = random.nextInt(200);
+                if (op < write) {
+                    map.put(key, key);
+                } else if (op < 2 * write) {
+                    map.remove(key);
+                } else {
+                    Integer value = map.get(key);
+                    if (null != value) acc += value;
+                }
+            }
+            return acc;
+        }
+
+        @Override
+        public int operations() {
+            return threads * OPS_PER_THREAD;
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.jr.test.algorithms.bench;
+
+import com.jr.test.algorithms.trees.BatchExpression;
+import com.jr.test.algorithms.trees.CompiledExpression;
+import com.jr.test.algorithms.trees.ExpressionParser;
+import com.jr.test.algorithms.trees.ExpressionTreeBuilder;
+import com.jr.test.algorithms.trees.TreeNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 表达式的求值和解析。
+ * <p>
+ * 求值：同一个公式对不断变化的变量取值反复求值，结果为每次求值的平均耗时。
+ * 参数：-p eval=treeWalk,compiled,columnar，-p size=...(随机公式中运算符的个数)。
+ * 随机公式由VARIABLES个变量、少量常数和+-*\/组成，其中一部分子表达式重复出现(可以被公共子表达式消除)，
+ * 也有只含常数的子表达式(可以被常量折叠)。每次run用ROWS组不同的变量值各求值一次。
+ * treeWalk每次在TreeNode上遍历并从HashMap中取变量，compiled执行CompiledExpression的字节码。
+ * columnar用BatchExpression按列对COLUMN_ROWS行一起求值，结果同样是每行的平均耗时，1e9/耗时就是单核每秒处理的行数。
+ * <p>
+ * 解析：-p parse=postfix,infix，每次run解析FORMULAS个不同的随机公式，结果为每个公式的平均耗时。
+ * postfix是原来的方式，空格分隔的后缀表达式先split再ExpressionTreeBuilder.build；
+ * infix用ExpressionParser解析同一个公式的中缀形式(只加必要的括号)。
+ * <pre>
+ * java com.jr.test.algorithms.bench.ExpressionBenchmark -p size=10,100,1000
+ * java com.jr.test.algorithms.bench.ExpressionBenchmark -e parse
+ * </pre>
+ */
+public class ExpressionBenchmark {
+
+    private static final int VARIABLES = 8;
+    private static final int ROWS = 1024;
+    private static final int COLUMN_ROWS = 64 * 1024;
+    private static final int FORMULAS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Bench.Options o = Bench.options(args);
+
+        List<Bench.Case> cases = new ArrayList<>();
+        for (int size : o.ints("size", "10,100,1000")) {
+            for (String eval : o.strings("eval", "treeWalk,compiled,columnar")) {
+                String name = eval + ":" + size;
+                switch (eval) {
+                    case "treeWalk":
+                        cases.add(Bench.of(name, () -> new TreeWalkTask(size)));
+                        break;
+                    case "compiled":
+                        cases.add(Bench.of(name, () -> new CompiledTask(size)));
+                        break;
+                    case "columnar":
+                        cases.add(Bench.of(name, () -> new ColumnarTask(size)));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown eval: " + eval);
+                }
+            }
+            for (String parse : o.strings("parse", "postfix,infix")) {
+                if (!"postfix".equals(parse) && !"infix".equals(parse)) {
+                    throw new IllegalArgumentException("unknown parse: " + parse);
+                }
+                boolean infix = "infix".equals(parse);
+                cases.add(Bench.of("parse:" + parse + ":" + size, () -> new ParseTask(size, infix)));
+            }
+        }
+
+        Bench.run(ExpressionBenchmark.class, o, cases);
+    }
+
+    static String[] variables() {
+        String[] names = new String[VARIABLES];
+        for (int i = 0; i < VARIABLES; i++) names[i] = "x" + i;
+        return names;
+    }
+
+    /**
+     * 有operators个运算符的随机后缀表达式。新生成的子表达式有1/4的概率被复制一份，
+     * 叶子有1/4的概率是常数
+     */
+    static String[] randomPostfix(int operators, long seed) {
+        Random random = new Random(seed);
+        String[] names = variables();
+        String[] ops = {"+", "-", "*", "/"};
+
+        List<List<String>> pool = new ArrayList<>();
+        for (int i = 0; i <= operators; i++) {
+            List<String> leaf = new ArrayList<>();
+            leaf.add(random.nextInt(4) == 0 ? String.valueOf(1 + random.nextInt(9)) : names[random.nextInt(VARIABLES)]);
+            pool.add(leaf);
+        }
+        // 每次取出两个子表达式合并，直到只剩一个
+        while (pool.size() > 1) {
+            List<String> right = pool.remove(random.nextInt(pool.size()));
+            List<String> left = pool.remove(random.nextInt(pool.size()));
+            List<String> merged = new ArrayList<>(left);
+            merged.addAll(right);
+            merged.add(ops[random.nextInt(ops.length)]);
+            pool.add(merged);
+            if (random.nextInt(4) == 0 && pool.size() > 1) {
+                // 用这个子表达式替换另一个叶子，形成公共子表达式
+                int i = random.nextInt(pool.size() - 1);
+                if (pool.get(i).size() == 1) pool.set(i, merged);
+            }
+        }
+        return pool.get(0).toArray(new String[0]);
+    }
+
+    /**
+     * 中缀形式，只在优先级需要时加括号。左结合：右操作数的优先级与父节点相同时也要加括号
+     */
+    static String toInfix(TreeNode node) {
+        StringBuilder sb = new StringBuilder();
+        infix(node, 0, sb);
+        return sb.toString();
+    }
+
+    private static void infix(TreeNode node, int minPrecedence, StringBuilder sb) {
+        if (null == node.getLeftChild()) {
+            sb.append(node.getValue());
+            return;
+        }
+        String op = node.getValue();
+        int p = "+".equals(op) || "-".equals(op) ? 1 : 2;
+        boolean parens = p < minPrecedence;
+        if (parens) sb.append('(');
+        infix(node.getLeftChild(), p, sb);
+        sb.append(' ').append(op).append(' ');
+        infix(node.getRightChild(), p + 1, sb);
+        if (parens) sb.append(')');
+    }
+
+    static double[][] rows(long seed) {
+        Random random = new Random(seed);
+        double[][] rows = new double[ROWS][VARIABLES];
+        for (double[] row : rows) {
+            for (int i = 0; i < VARIABLES; i++) row[i] = 1 + random.nextDouble();
+        }
+        return rows;
+    }
+
+    /**
+     * 与rows相同的分布，按列存放
+     */
+    static double[][] columns(long seed, int rows) {
+        Random random = new Random(seed);
+        double[][] columns = new double[VARIABLES][rows];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < VARIABLES; i++) columns[i][r] = 1 + random.nextDouble();
+        }
+        return columns;
+    }
+
+    private static class TreeWalkTask implements Bench.Task {
+
+        private final TreeNode tree;
+        private final String[] names = variables();
+        private final double[][] rows = rows(7);
+        private final Map<String, Double> vars = new HashMap<>();
+
+        TreeWalkTask(int size) {
+            this.tree = ExpressionTreeBuilder.build(randomPostfix(size, 42));
+        }
+
+        @Override
+        public long run() {
+            double acc = 0;
+            for (double[] row : rows) {
+                for (int i = 0; i < VARIABLES; i++) vars.put(names[i], row[i]);
+                acc += ExpressionTreeBuilder.evaluate(tree, vars);
+            }
+            return Double.doubleToLongBits(acc);
+        }
+
+        @Override
+        public int operations() {
+            return ROWS;
+        }
+    }
+
+    private static class ParseTask implements Bench.Task {
+
+        private final String[] formulas = new String[FORMULAS];
+        private final boolean infix;
+        private final ExpressionParser parser = new ExpressionParser();
+
+        ParseTask(int size, boolean infix) {
+            this.infix = infix;
+            for (int i = 0; i < FORMULAS; i++) {
+                String[] postfix = randomPostfix(size, i);
+                formulas[i] = infix ? toInfix(ExpressionTreeBuilder.build(postfix)) : String.join(" ", postfix);
+            }
+        }
+
+        @Override
+        public long run() {
+            long acc = 0;
+            for (String formula : formulas) {
+                TreeNode tree = infix ? parser.parse(formula) : ExpressionTreeBuilder.build(formula.split(" "));
+                acc += tree.getValue().length();
+            }
+            return acc;
+        }
+
+        @Override
+        public int operations() {
+            return FORMULAS;
+        }
+    }
+
+    private static class CompiledTask implements Bench.Task {
+
+        private final CompiledExpression expr;
+        private final double[][] rows = rows(7);
+
+        CompiledTask(int size) {
+            this.expr = CompiledExpression.compile(ExpressionTreeBuilder.build(randomPostfix(size, 42)), variables());
+        }
+
+        @Override
+        public long run() {
+            double acc = 0;
+            for (double[] row : rows) acc += expr.evaluate(row);
+            return Double.doubleToLongBits(acc);
+        }
+
+        @Override
+        public int operations() {
+            return ROWS;
+        }
+    }
+
+    private static class ColumnarTask implements Bench.Task {
+
+        private final BatchExpression expr;
+        private final double[][] columns = columns(7, COLUMN_ROWS);
+        private final double[] out = new double[COLUMN_ROWS];
+
+        ColumnarTask(int size) {
+            this.expr = BatchExpression.compile(ExpressionTreeBuilder.build(randomPostfix(size, 42)), variables());
+        }
+
+        @Override
+        public long run() {
+            expr.evaluate(columns, out);
+            double acc = 0;
+            for (double v : out) acc += v;
+            return Double.doubleToLongBits(acc);
+        }
+
+        @Override
+        public int operations() {
+            return COLUMN_ROWS;
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+package com.jr.test.algorithms.bench;
+
+import com.jr.test.algorithms.link.IntLinkedLists;
+import com.jr.test.algorithms.link.LinkedListReverse;
+import com.jr.test.algorithms.link.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * int链表的基准测试：link.Node链、IntLinkedLists和LinkedList&lt;Integer&gt;，结果为每个元素的平均耗时。
+ * <p>
+ * 参数：-p list=node,intList,linkedList，-p size=...，-p layout=sequential,shuffled，-p op=build,traverse,reverse,queue。
+ * <p>
+ * 1. build：每次run新建一个size个元素的链表，alloc B/op就是每个元素占用的内存(IntLinkedLists按size预分配容量)；
+ * 2. traverse：遍历求和(IntLinkedLists用forEach)；reverse：反转整个链表(LinkedList用Collections.reverse交换元素)；
+ * 3. queue：作为先进先出队列，取出队首再追加到队尾，重复size次。
+ * <p>
+ * sequential按顺序追加，节点在内存中的顺序就是链表的顺序，是指针链表最好的情况；
+ * shuffled把第i个元素插入到前面随机一个元素之后，链表顺序与内存顺序无关，模拟长期增删之后的链表。
+ * LinkedList不能O(1)地定位到任意节点，只测试sequential。
+ * <pre>
+ * java com.jr.test.algorithms.bench.LinkedListBenchmark -p size=1e6 -p op=traverse,reverse
+ * </pre>
+ */
+public class LinkedListBenchmark {
+
+    private static final String SIZES = "1e3,1e6";
+
+    public static void main(String[] args) throws Exception {
+        Bench.Options o = Bench.options(args);
+
+        List<Bench.Case> cases = new ArrayList<>();
+        for (String list : o.strings("list", "node,intList,linkedList")) {
+            for (int size : o.ints("size", SIZES)) {
+                for (String layout : o.strings("layout", "sequential,shuffled")) {
+                    boolean shuffled = "shuffled".equals(layout);
+                    if (!shuffled && !"sequential".equals(layout)) {
+                        throw new IllegalArgumentException("unknown layout: " + layout);
+                    }
+                    if (shuffled && "linkedList".equals(list)) continue;
+
+                    for (String op : o.strings("op", "build,traverse,reverse,queue")) {
+                        String name = list + ":" + op + ":" + layout + ":" + size;
+                        switch (list) {
+                            case "node":
+                                cases.add(Bench.of(name, () -> new NodeTask(op, size, shuffled)));
+                                break;
+                            case "intList":
+                                cases.add(Bench.of(name, () -> new IntListTask(op, size, shuffled)));
+                                break;
+                            case "linkedList":
+                                cases.add(Bench.of(name, () -> new LinkedListTask(op, size)));
+                                break;
+                            default:
+                                throw new IllegalArgumentException("unknown list: " + list);
+                        }
+                    }
+                }
+            }
+        }
+
+        Bench.run(LinkedListBenchmark.class, o, cases);
+    }
+
+    /**
+     * shuffled时第i个元素插入到第positions[i]个元素之后(positions[i] < i)
+     */
+    static int[] positions(int size) {
+        Random random = new Random(42);
+        int[] positions = new int[size];
+        for (int i = 1; i < size; i++) positions[i] = random.nextInt(i);
+        return positions;
+    }
+
+    private abstract static class ListTask implements Bench.Task {
+
+        final String op;
+        final int size;
+        final int[] positions;
+
+        ListTask(String op, int size, boolean shuffled) {
+            if (!"build".equals(op) && !"traverse".equals(op) && !"reverse".equals(op) && !"queue".equals(op)) {
+                throw new IllegalArgumentException("unknown op: " + op);
+            }
+            this.op = op;
+            this.size = size;
+            this.positions = shuffled ? positions(size) : null;
+        }
+
+        @Override
+        public long run() {
+            switch (op) {
+                case "build":
+                    return build();
+                case "traverse":
+                    return traverse();
+                case "reverse":
+                    return reverse();
+                default:
+                    return queue();
+            }
+        }
+
+        abstract long build();
+
+        abstract long traverse();
+
+        abstract long reverse();
+
+        abstract long queue();
+
+        @Override
+        public int operations() {
+            return size;
+        }
+    }
+
+    private static class NodeTask extends ListTask {
+
+        private Node head, tail;
+
+        NodeTask(String op, int size, boolean shuffled) {
+            super(op, size, shuffled);
+            build();
+        }
+
+        @Override
+        long build() {
+            head = tail = new Node(0, null);
+            if (null == positions) {
+                for (int i = 1; i < size; i++) tail = tail.next = new Node(i, null);
+            } else {
+                Node[] nodes = new Node[size];
+                nodes[0] = head;
+                for (int i = 1; i < size; i++) {
+                    Node after = nodes[positions[i]];
+                    after.next = nodes[i] = new Node(i, after.next);
+                    if (after == tail) tail = nodes[i];
+                }
+            }
+            return tail.value;
+        }
+
+        @Override
+        long traverse() {
+            long sum = 0;
+            for (Node node = head; null != node; node = node.next) sum += node.value;
+            return sum;
+        }
+
+        @Override
+        long reverse() {
+            Node first = head;
+            head = LinkedListReverse.reverse(head);
+            tail = first;
+            return head.value;
+        }
+
+        @Override
+        long queue() {
+            long acc = 0;
+            for (int i = 0; i < size; i++) {
+                Node node = head;
+                head = node.next;
+                acc += node.value;
+                tail = tail.next = new Node(node.value + 1, null);
+                if (null == head) head = tail;
+            }
+            return acc;
+        }
+    }
+
+    private static class IntListTask extends ListTask {
+
+        private IntLinkedLists lists;
+        private int list;
+        private long sum;
+
+        IntListTask(String op, int size, boolean shuffled) {
+            super(op, size, shuffled);
+            build();
+        }
+
+        @Override
+        long build() {
+            lists = new IntLinkedLists(size + 1);
+            list = lists.newList();
+            if (null == positions) {
+                for (int i = 0; i < size; i++) lists.addLast(list, i);
+            } else {
+                int[] handles = new int[size];
+                handles[0] = lists.addLast(list, 0);
+                for (int i = 1; i < size; i++) handles[i] = lists.insertAfter(handles[positions[i]], i);
+            }
+            return lists.size();
+        }
+
+        // forEach直接遍历数组，不检查handle
+        @Override
+        long traverse() {
+            sum = 0;
+            lists.forEach(list, v -> sum += v);
+            return sum;
+        }
+
+        @Override
+        long reverse() {
+            lists.reverse(list);
+            return lists.first(list);
+        }
+
+        @Override
+        long queue() {
+            long acc = 0;
+            for (int i = 0; i < size; i++) {
+                int v = lists.pollFirst(list);
+                acc += v;
+                lists.addLast(list, v + 1);
+            }
+            return acc;
+        }
+    }
+
+    private static class LinkedListTask extends ListTask {
+
+        private LinkedList<Integer> list;
+
+        LinkedListTask(String op, int size) {
+            super(op, size, false);
+            build();
+        }
+
+        @Override
+        long build() {
+            list = new LinkedList<>();
+            for (int i = 0; i < size; i++) list.add(i);
+            return list.size();
+        }
+
+        @Override
+        long traverse() {
+            long sum = 0;
+            for (int v : list) sum += v;
+            return sum;
+        }
+
+        @Override
+        long reverse() {
+            Collections.reverse(list);
+            return list.getFirst();
+        }
+
+        @Override
+        long queue() {
+            long acc = 0;
+            for (int i = 0; i < size; i++) {
+                int v = list.pollFirst();
+                acc += v;
+                list.addLast(v + 1);
+            }
+            return acc;
+        }
+    }
+
+}
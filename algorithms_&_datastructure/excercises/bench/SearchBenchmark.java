@@ -0,0 +1,158 @@
+package com.jr.test.algorithms.bench;
+
+import com.jr.test.algorithms.search.BatchSearch;
+import com.jr.test.algorithms.search.BinarySearch;
+import com.jr.test.algorithms.search.BranchlessSearch;
+import com.jr.test.algorithms.search.EytzingerIndex;
+import com.jr.test.algorithms.search.InterpolationSearch;
+import com.jr.test.algorithms.search.LearnedIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 有序int数组上各种查找方式的基准测试，结果为每个key的平均耗时。
+ * <p>
+ * 参数：-p size=...(有序数组长度)，-p queries=...(每批key的个数)，-p error=...(LearnedIndex的误差上限)。
+ * 有序数组为[0, 4 * size)中的随机值，key中一半存在、一半不存在。
+ * <pre>
+ * java com.jr.test.algorithms.bench.SearchBenchmark -p size=1e3,1e6,1e7 -p queries=1e4
+ * </pre>
+ */
+public class SearchBenchmark {
+
+    private static final String SIZES = "1e3,1e5,1e7";
+
+    private static final String QUERIES = "1e4";
+
+    interface Lookup {
+        long lookup(int[] queries, int[] results);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bench.Options o = Bench.options(args);
+
+        List<Bench.Case> cases = new ArrayList<>();
+        for (int size : o.ints("size", SIZES)) {
+            for (int q : o.ints("queries", QUERIES)) {
+                String suffix = ":" + size + ":" + q;
+                cases.add(Bench.of("binary" + suffix, () -> {
+                    int[] sorted = sorted(size);
+                    return new LookupTask(sorted, q, (keys, r) -> {
+                        long acc = 0;
+                        for (int key : keys) acc += BinarySearch.search(sorted, key);
+                        return acc;
+                    });
+                }));
+                cases.add(Bench.of("branchless" + suffix, () -> {
+                    int[] sorted = sorted(size);
+                    return new LookupTask(sorted, q, (keys, r) -> {
+                        long acc = 0;
+                        for (int key : keys) acc += BranchlessSearch.search(sorted, key);
+                        return acc;
+                    });
+                }));
+                cases.add(Bench.of("interpolation" + suffix, () -> {
+                    int[] sorted = sorted(size);
+                    return new LookupTask(sorted, q, (keys, r) -> {
+                        long acc = 0;
+                        for (int key : keys) acc += InterpolationSearch.search(sorted, key);
+                        return acc;
+                    });
+                }));
+                cases.add(Bench.of("eytzinger" + suffix, () -> {
+                    int[] sorted = sorted(size);
+                    EytzingerIndex index = new EytzingerIndex(sorted);
+                    return new LookupTask(sorted, q, (keys, r) -> {
+                        long acc = 0;
+                        for (int key : keys) acc += index.search(key);
+                        return acc;
+                    });
+                }));
+                for (int error : o.ints("error", "8,32,128")) {
+                    cases.add(Bench.of("learned(" + error + ")" + suffix, () -> {
+                        int[] sorted = sorted(size);
+                        LearnedIndex index = new LearnedIndex(sorted, error);
+                        LookupTask task = new LookupTask(sorted, q, (keys, r) -> {
+                            long acc = 0;
+                            for (int key : keys) acc += index.search(key);
+                            return acc;
+                        });
+                        task.info = index.getSegmentCount() + " segments, " + index.memoryBytes() + " bytes";
+                        return task;
+                    }));
+                }
+                cases.add(Bench.of("batch" + suffix, () -> {
+                    int[] sorted = sorted(size);
+                    return new LookupTask(sorted, q, (keys, r) -> {
+                        BatchSearch.search(sorted, keys, r);
+                        return r[0];
+                    });
+                }));
+                cases.add(Bench.of("batchSortedKeys" + suffix, () -> {
+                    int[] sorted = sorted(size);
+                    LookupTask task = new LookupTask(sorted, q, (keys, r) -> {
+                        BatchSearch.search(sorted, keys, r);
+                        return r[0];
+                    });
+                    Arrays.sort(task.queries);
+                    return task;
+                }));
+            }
+        }
+
+        Bench.run(SearchBenchmark.class, o, cases);
+    }
+
+    static int[] sorted(int size) {
+        Random random = new Random(42);
+        int[] arr = new int[size];
+        for (int i = 0; i < size; i++) {
+            arr[i] = random.nextInt(Math.max(1, 4 * size));
+        }
+        Arrays.sort(arr);
+        return arr;
+    }
+
+    static int[] queries(int[] sorted, int q) {
+        Random random = new Random(7);
+        int[] queries = new int[q];
+        for (int i = 0; i < q; i++) {
+            queries[i] = i % 2 == 0 && sorted.length > 0
+                    ? sorted[random.nextInt(sorted.length)]
+                    : random.nextInt(Math.max(1, 4 * sorted.length));
+        }
+        return queries;
+    }
+
+    private static class LookupTask implements Bench.Task {
+
+        private final int[] queries, results;
+        private final Lookup lookup;
+        private String info;
+
+        LookupTask(int[] sorted, int q, Lookup lookup) {
+            this.queries = queries(sorted, q);
+            this.results = new int[q];
+            this.lookup = lookup;
+        }
+
+        @Override
+        public long run() {
+            return lookup.lookup(queries, results);
+        }
+
+        @Override
+        public int operations() {
+            return queries.length;
+        }
+
+        @Override
+        public String info() {
+            return info;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.jr.test.algorithms.bench;
+
+import com.jr.test.algorithms.sorts.AdaptiveSort;
+import com.jr.test.algorithms.sorts.IntroSort;
+import com.jr.test.algorithms.sorts.ParallelMergeSort;
+import com.jr.test.algorithms.sorts.PrimitiveBucketSort;
+import com.jr.test.algorithms.sorts.RadixSort;
+import com.jr.test.algorithms.sorts.RunMergeSort;
+import com.jr.test.algorithms.sorts.ShellSort;
+import com.jr.test.algorithms.sorts.SortAllInOne;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * SortAllInOne和sorts包中各个排序算法的基准测试，Arrays.sort和Arrays.parallelSort作为基线。
+ * <p>
+ * 参数：-p algorithm=...，-p size=...，-p dist=random,sorted,reversed,sawtooth,few-unique,organ-pipe。
+ * 元素取值在[0, size)之间。o(n^2)的算法以及在有序/重复输入上会退化的SortAllInOne.quickSort
+ * 只测试不超过QUADRATIC_LIMIT的长度。1e8的长度需要 -Xmx4g 左右的堆。
+ * <pre>
+ * java -Xmx4g com.jr.test.algorithms.bench.SortBenchmark -f 1 -wi 3 -i 5 -p size=1e2,1e4,1e6
+ * </pre>
+ */
+public class SortBenchmark {
+
+    private static final int QUADRATIC_LIMIT = 100_000;
+
+    private static final String SIZES = "1e2,1e4,1e6,1e8";
+
+    private static final String DISTRIBUTIONS = "random,sorted,reversed,sawtooth,few-unique,organ-pipe";
+
+    public static void main(String[] args) throws Exception {
+        Bench.Options o = Bench.options(args);
+
+        Map<String, Consumer<int[]>> algorithms = algorithms();
+        String[] names = o.strings("algorithm", String.join(",", algorithms.keySet()));
+
+        List<Bench.Case> cases = new ArrayList<>();
+        for (String name : names) {
+            Consumer<int[]> sort = algorithms.get(name);
+            if (null == sort) throw new IllegalArgumentException("unknown algorithm: " + name);
+
+            for (int size : o.ints("size", SIZES)) {
+                for (String dist : o.strings("dist", DISTRIBUTIONS)) {
+                    if (size > QUADRATIC_LIMIT && isQuadratic(name, dist)) continue;
+
+                    cases.add(Bench.of(name + ":" + dist + ":" + size, () -> new SortTask(sort, generate(dist, size))));
+                }
+            }
+        }
+
+        Bench.run(SortBenchmark.class, o, cases);
+    }
+
+    private static Map<String, Consumer<int[]>> algorithms() {
+        Map<String, Consumer<int[]>> map = new LinkedHashMap<>();
+        map.put("bubble", SortAllInOne::bubbleSort);
+        map.put("selection", SortAllInOne::selectionSort);
+        map.put("insertion", SortAllInOne::insertionSort);
+        map.put("quick", arr -> SortAllInOne.quickSort(arr, 0, arr.length - 1));
+        map.put("shell", SortAllInOne::shellSort);
+        map.put("heap", SortAllInOne::heapSort);
+        map.put("merge", SortAllInOne::mergeSort);
+        map.put("count", SortAllInOne::countSort);
+        map.put("bucket", SortAllInOne::bucketSort);
+        map.put("shellCiura", arr -> ShellSort.sort(arr, ShellSort.GapSequence.CIURA));
+        map.put("shellTokuda", arr -> ShellSort.sort(arr, ShellSort.GapSequence.TOKUDA));
+        map.put("shellSedgewick", arr -> ShellSort.sort(arr, ShellSort.GapSequence.SEDGEWICK));
+        map.put("intro", IntroSort::sort);
+        map.put("parallelMerge", ParallelMergeSort::sort);
+        map.put("radixLsd", RadixSort::lsdSort);
+        map.put("radixMsd", RadixSort::msdSort);
+        map.put("primitiveBucket", PrimitiveBucketSort::sort);
+        map.put("runMerge", RunMergeSort::sort);
+        map.put("adaptive", AdaptiveSort::sort);
+        map.put("jdkSort", Arrays::sort);
+        map.put("jdkParallelSort", Arrays::parallelSort);
+        return map;
+    }
+
+    private static boolean isQuadratic(String name, String dist) {
+        switch (name) {
+            case "bubble":
+            case "selection":
+            case "insertion":
+                return true;
+            case "quick":
+                return !"random".equals(dist);
+            default:
+                return false;
+        }
+    }
+
+    static int[] generate(String dist, int size) {
+        Random random = new Random(42);
+        int[] arr = new int[size];
+        for (int i = 0; i < size; i++) {
+            switch (dist) {
+                case "random":
+                    arr[i] = random.nextInt(size);
+                    break;
+                case "sorted":
+                    arr[i] = i;
+                    break;
+                case "reversed":
+                    arr[i] = size - i;
+                    break;
+                case "sawtooth":
+                    arr[i] = i % Math.max(1, size / 16);
+                    break;
+                case "few-unique":
+                    arr[i] = random.nextInt(16);
+                    break;
+                case "organ-pipe":
+                    arr[i] = i < size / 2 ? i : size - i;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown distribution: " + dist);
+            }
+        }
+        return arr;
+    }
+
+    /**
+     * 每次排序前把原始数据拷贝到工作数组中(不计时)
+     */
+    private static class SortTask implements Bench.Task {
+
+        private final Consumer<int[]> sort;
+        private final int[] source, work;
+
+        SortTask(Consumer<int[]> sort, int[] source) {
+            this.sort = sort;
+            this.source = source;
+            this.work = new int[source.length];
+        }
+
+        @Override
+        public void prepare() {
+            System.arraycopy(source, 0, work, 0, source.length);
+        }
+
+        @Override
+        public long run() {
+            sort.accept(work);
+            return work.length == 0 ? 0 : work[work.length - 1];
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.jr.test.algorithms.bench;
+
+import com.jr.test.algorithms.trees.AVLTree;
+import com.jr.test.algorithms.trees.BPlusTree;
+import com.jr.test.algorithms.trees.BinarySearchTree;
+import com.jr.test.algorithms.trees.OffHeapAVLTree;
+import com.jr.test.algorithms.trees.RedBlackTree;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * trees包中有序集合的基准测试，TreeMap作为基线，结果为每个key的平均耗时。
+ * <p>
+ * 参数：-p tree=...，-p size=...，-p dist=sorted,random，-p op=insert,contains。
+ * insert每次run把size个key插入一棵空树，contains在建好的树上查找全部key。
+ * 递归且不平衡的BinarySearchTree在有序输入上退化为链表(深度为size，更大时会StackOverflowError)，
+ * 只测试不超过UNBALANCED_LIMIT的长度。
+ * <pre>
+ * java com.jr.test.algorithms.bench.TreeBenchmark -p dist=sorted -p size=1e3,1e4
+ * </pre>
+ */
+public class TreeBenchmark {
+
+    private static final int UNBALANCED_LIMIT = 10_000;
+
+    private static final String SIZES = "1e3,1e4,1e6";
+
+    /**
+     * 统一各种树的插入和查找接口
+     */
+    interface IntSet {
+        void insert(Integer key);
+
+        boolean contains(Integer key);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bench.Options o = Bench.options(args);
+
+        Map<String, Supplier<IntSet>> trees = trees();
+        String[] names = o.strings("tree", String.join(",", trees.keySet()));
+
+        List<Bench.Case> cases = new ArrayList<>();
+        for (String name : names) {
+            Supplier<IntSet> tree = trees.get(name);
+            if (null == tree) throw new IllegalArgumentException("unknown tree: " + name);
+
+            for (int size : o.ints("size", SIZES)) {
+                for (String dist : o.strings("dist", "sorted,random")) {
+                    if (size > UNBALANCED_LIMIT && "bst".equals(name) && "sorted".equals(dist)) continue;
+
+                    for (String op : o.strings("op", "insert,contains")) {
+                        String caseName = name + ":" + op + ":" + dist + ":" + size;
+                        cases.add(Bench.of(caseName, () -> new TreeTask(tree, op, keys(dist, size))));
+                    }
+                }
+            }
+        }
+
+        Bench.run(TreeBenchmark.class, o, cases);
+    }
+
+    private static Map<String, Supplier<IntSet>> trees() {
+        Map<String, Supplier<IntSet>> map = new LinkedHashMap<>();
+        map.put("bst", () -> {
+            BinarySearchTree<Integer> tree = new BinarySearchTree<>();
+            return set(tree::insert, tree::contains);
+        });
+        map.put("redBlack", () -> {
+            RedBlackTree<Integer> tree = new RedBlackTree<>();
+            return set(tree::insert, tree::contains);
+        });
+        map.put("avl", () -> {
+            AVLTree<Integer, Boolean> tree = new AVLTree<>();
+            return set(key -> tree.put(key, Boolean.TRUE), tree::containsKey);
+        });
+        map.put("bplus", () -> {
+            BPlusTree tree = new BPlusTree();
+            return set(key -> tree.put(key, key), key -> tree.containsKey(key));
+        });
+        map.put("offHeapAvl", () -> {
+            OffHeapAVLTree tree = new OffHeapAVLTree();
+            return set(key -> tree.put(key, key), key -> tree.containsKey(key));
+        });
+        map.put("jdkTreeMap", () -> {
+            TreeMap<Integer, Boolean> tree = new TreeMap<>();
+            return set(key -> tree.put(key, Boolean.TRUE), tree::containsKey);
+        });
+        return map;
+    }
+
+    private static IntSet set(Consumer<Integer> insert, Predicate<Integer> contains) {
+        return new IntSet() {
+            @Override
+            public void insert(Integer key) {
+                insert.accept(key);
+            }
+
+            @Override
+            public boolean contains(Integer key) {
+                return contains.test(key);
+            }
+        };
+    }
+
+    // key预先装箱，避免把Integer.valueOf的开销算进去
+    static Integer[] keys(String dist, int size) {
+        Integer[] keys = new Integer[size];
+        for (int i = 0; i < size; i++) keys[i] = i;
+
+        switch (dist) {
+            case "sorted":
+                break;
+            case "random":
+                Random random = new Random(42);
+                for (int i = size - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    Integer t = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = t;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown distribution: " + dist);
+        }
+        return keys;
+    }
+
+    private static class TreeTask implements Bench.Task {
+
+        private final Supplier<IntSet> factory;
+        private final boolean insert;
+        private final Integer[] keys;
+        private IntSet set;
+
+        TreeTask(Supplier<IntSet> factory, String op, Integer[] keys) {
+            this.factory = factory;
+            this.insert = "insert".equals(op);
+            this.keys = keys;
+            if (!insert) {
+                if (!"contains".equals(op)) throw new IllegalArgumentException("unknown op: " + op);
+                set = factory.get();
+                for (Integer key : keys) set.insert(key);
+            }
+        }
+
+        @Override
+        public void prepare() {
+            if (insert) set = factory.get();
+        }
+
+        @Override
+        public long run() {
+            long acc = 0;
+            if (insert) {
+                for (Integer key : keys) set.insert(key);
+            } else {
+                for (Integer key : keys) if (set.contains(key)) acc++;
+            }
+            return acc;
+        }
+
+        @Override
+        public int operations() {
+            return keys.length;
+        }
+    }
+
+}
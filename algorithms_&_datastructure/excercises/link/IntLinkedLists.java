@@ -0,0 +1,316 @@
+package com.jr.test.algorithms.link;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * 用int数组实现的双向链表，元素是int。一个实例是一个节点池，其中可以有任意多个链表，
+ * 链表之间可以O(1)地拆分和拼接(节点不需要复制，只改链接)。
+ * <p>
+ * 1. 节点用下标(handle)表示，next/prev/value是三个并行的int数组，没有每个节点一个对象的开销(对象头、引用、Integer装箱)，
+ *    每个节点12字节，相邻创建的节点在内存中也相邻；
+ * 2. 删除的节点通过next串成空闲链表，之后的插入优先复用，数组只在空闲链表为空时按2倍扩容；
+ * 3. 每个链表有一个哨兵节点，链表的id就是哨兵的handle，链表首尾相连成环，插入和删除不需要判断边界；
+ *    在handle为h的节点后面插入时，h也可以是链表id，表示插入到最前面；
+ * 4. 按handle插入、删除都是O(1)，反转是原地的O(n)，split/spliceAfter是O(1)。
+ * <p>
+ * next/prev到达链表末尾时返回NIL，遍历：for (int h = lists.first(list); h != NIL; h = lists.next(h))。
+ * 已经删除的handle会被复用，继续使用时只能检测出它当前是空闲的情况。不是线程安全的。
+ */
+public final class IntLinkedLists {
+
+    public static final int NIL = -1;
+
+    // 空闲节点的prev，正在使用的节点的prev总是>=0
+    private static final int FREE = -2;
+
+    private int[] next, prev, value;
+    // 哪些节点是哨兵，每个节点一位
+    private long[] sentinels;
+
+    // [0, top)是已经分配过的节点
+    private int top;
+    private int free = NIL;
+    private int size;
+
+    public IntLinkedLists() {
+        this(16);
+    }
+
+    public IntLinkedLists(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity: " + capacity);
+        next = new int[capacity];
+        prev = new int[capacity];
+        value = new int[capacity];
+        sentinels = new long[(capacity + 63) >>> 6];
+    }
+
+    /**
+     * 所有链表中元素的总数，不含哨兵
+     */
+    public int size() {
+        return size;
+    }
+
+    // =====================================================
+    // 节点的分配和回收
+    private int allocate() {
+        int h = free;
+        if (h != NIL) {
+            free = next[h];
+            return h;
+        }
+        if (top == next.length) grow();
+        return top++;
+    }
+
+    private void grow() {
+        if (next.length == Integer.MAX_VALUE) throw new IllegalStateException("too many nodes");
+        int n = (int) Math.min(2L * next.length, Integer.MAX_VALUE);
+        next = Arrays.copyOf(next, n);
+        prev = Arrays.copyOf(prev, n);
+        value = Arrays.copyOf(value, n);
+        sentinels = Arrays.copyOf(sentinels, (n + 63) >>> 6);
+    }
+
+    private void release(int h) {
+        prev[h] = FREE;
+        next[h] = free;
+        free = h;
+    }
+
+    private boolean isSentinel(int h) {
+        return (sentinels[h >>> 6] & (1L << h)) != 0;
+    }
+
+    private boolean isLive(int h) {
+        return h >= 0 && h < top && prev[h] != FREE;
+    }
+
+    private int checkNode(int h) {
+        if (!isLive(h) || isSentinel(h)) throw new IllegalArgumentException("invalid handle: " + h);
+        return h;
+    }
+
+    private int checkList(int list) {
+        if (!isLive(list) || !isSentinel(list)) throw new IllegalArgumentException("invalid list: " + list);
+        return list;
+    }
+
+    private int checkPosition(int h) {
+        if (!isLive(h)) throw new IllegalArgumentException("invalid handle: " + h);
+        return h;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 链表
+    /**
+     * 创建一个空链表，返回链表id
+     */
+    public int newList() {
+        int s = allocate();
+        next[s] = prev[s] = s;
+        sentinels[s >>> 6] |= 1L << s;
+        return s;
+    }
+
+    /**
+     * 删除链表及其所有元素，之后链表id失效
+     */
+    public void deleteList(int list) {
+        clear(list);
+        sentinels[list >>> 6] &= ~(1L << list);
+        release(list);
+    }
+
+    /**
+     * 删除链表中的所有元素，整段节点一次挂到空闲链表上
+     */
+    public void clear(int list) {
+        int s = checkList(list);
+        if (next[s] == s) return;
+        int first = next[s], last = prev[s];
+        for (int h = first; h != s; h = next[h]) {
+            prev[h] = FREE;
+            size--;
+        }
+        next[last] = free;
+        free = first;
+        next[s] = prev[s] = s;
+    }
+
+    public boolean isEmpty(int list) {
+        return next[checkList(list)] == list;
+    }
+
+    /**
+     * 元素个数，o(n)
+     */
+    public int count(int list) {
+        int s = checkList(list), n = 0;
+        for (int h = next[s]; h != s; h = next[h]) n++;
+        return n;
+    }
+
+    public int first(int list) {
+        int h = next[checkList(list)];
+        return h == list ? NIL : h;
+    }
+
+    public int last(int list) {
+        int h = prev[checkList(list)];
+        return h == list ? NIL : h;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 节点
+    public int next(int handle) {
+        int h = next[checkNode(handle)];
+        return isSentinel(h) ? NIL : h;
+    }
+
+    public int prev(int handle) {
+        int h = prev[checkNode(handle)];
+        return isSentinel(h) ? NIL : h;
+    }
+
+    public int value(int handle) {
+        return value[checkNode(handle)];
+    }
+
+    public void set(int handle, int v) {
+        value[checkNode(handle)] = v;
+    }
+
+    public int addFirst(int list, int v) {
+        return link(checkList(list), v);
+    }
+
+    public int addLast(int list, int v) {
+        return link(prev[checkList(list)], v);
+    }
+
+    /**
+     * 插入到handle之后，handle是链表id时插入到最前面。返回新节点的handle
+     */
+    public int insertAfter(int handle, int v) {
+        return link(checkPosition(handle), v);
+    }
+
+    public int insertBefore(int handle, int v) {
+        return link(prev[checkNode(handle)], v);
+    }
+
+    private int link(int after, int v) {
+        int h = allocate();
+        int n = next[after];
+        value[h] = v;
+        prev[h] = after;
+        next[h] = n;
+        prev[n] = h;
+        next[after] = h;
+        size++;
+        return h;
+    }
+
+    /**
+     * 删除节点，返回它的值
+     */
+    public int remove(int handle) {
+        int h = checkNode(handle);
+        int p = prev[h], n = next[h];
+        next[p] = n;
+        prev[n] = p;
+        size--;
+        int v = value[h];
+        release(h);
+        return v;
+    }
+
+    /**
+     * 删除并返回第一个元素，作为队列使用
+     */
+    public int pollFirst(int list) {
+        int h = next[checkList(list)];
+        if (h == list) throw new NoSuchElementException();
+        return remove(h);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 整体操作
+    /**
+     * 原地反转：交换每个节点(包括哨兵)的next和prev
+     */
+    public void reverse(int list) {
+        int h = checkList(list);
+        do {
+            int n = next[h];
+            next[h] = prev[h];
+            prev[h] = n;
+            h = n;
+        } while (h != list);
+    }
+
+    /**
+     * 从handle到末尾的部分移到一个新的链表中，返回新链表的id。handle必须属于list，o(1)
+     */
+    public int split(int list, int handle) {
+        checkList(list);
+        checkNode(handle);
+        int s = newList();
+        int p = prev[handle], last = prev[list];
+        next[p] = list;
+        prev[list] = p;
+        next[s] = handle;
+        prev[handle] = s;
+        next[last] = s;
+        prev[s] = last;
+        return s;
+    }
+
+    /**
+     * 把other的全部元素按原顺序插入到handle之后，other变成空链表。handle是链表id时插入到最前面，
+     * handle不能属于other，o(1)
+     */
+    public void spliceAfter(int handle, int other) {
+        checkPosition(handle);
+        checkList(other);
+        if (handle == other) throw new IllegalArgumentException("cannot splice a list into itself");
+        if (next[other] == other) return;
+        int first = next[other], last = prev[other], n = next[handle];
+        next[handle] = first;
+        prev[first] = handle;
+        next[last] = n;
+        prev[n] = last;
+        next[other] = prev[other] = other;
+    }
+
+    /**
+     * 把other的全部元素接到list的末尾
+     */
+    public void append(int list, int other) {
+        spliceAfter(prev[checkList(list)], other);
+    }
+
+    public void forEach(int list, IntConsumer action) {
+        int s = checkList(list);
+        for (int h = next[s]; h != s; h = next[h]) action.accept(value[h]);
+    }
+
+    public int[] toArray(int list) {
+        int[] a = new int[count(list)];
+        int i = 0;
+        for (int h = next[list]; h != list; h = next[h]) a[i++] = value[h];
+        return a;
+    }
+
+    public String toString(int list) {
+        return Arrays.toString(toArray(list));
+    }
+    // =====================================================
+
+}
@@ -11,9 +11,15 @@ public class LinkedListReverse {
 
         Node node = reverse(head);
         System.out.println(node);
+
+        IntLinkedLists lists = new IntLinkedLists();
+        int list = lists.newList();
+        for (int i = 1; i <= 5; i++) lists.addLast(list, i);
+        lists.reverse(list);
+        System.out.println(lists.toString(list));
     }
 
-    static Node reverse(Node current) {
+    public static Node reverse(Node current) {
 
         Node nextNode, previousNode = null;
 
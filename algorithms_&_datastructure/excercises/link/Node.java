@@ -10,14 +10,22 @@ public class Node {
         this.next = next;
     }
 
+    /**
+     * 格式与递归拼接相同：Node [value=1, next=Node [value=2, next=null]]，用循环代替递归，长链表不会栈溢出
+     */
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
-        sb.append(getClass().getSimpleName());
-        sb.append(" [");
-        sb.append("value=").append(value);
-        sb.append(", next=").append(next);
-        sb.append("]");
+        int depth = 0;
+        for (Node node = this; null != node; node = node.next) {
+            sb.append(node.getClass().getSimpleName());
+            sb.append(" [");
+            sb.append("value=").append(node.value);
+            sb.append(", next=");
+            depth++;
+        }
+        sb.append("null");
+        for (int i = 0; i < depth; i++) sb.append("]");
         return sb.toString();
     }
 }
@@ -0,0 +1,134 @@
+package com.jr.test.algorithms.search;
+
+import com.jr.test.algorithms.sorts.ArgSort;
+
+/**
+ * 在同一个有序数组中批量查找多个key，结果写入调用方提供的数组。
+ * <p>
+ * 1. key已经有序：归并式地向前推进，每个key从上一个结果开始指数查找再二分，总代价o(q * lg(n / q))；
+ * 2. key无序但数量较多(不少于SORT_THRESHOLD且不少于n / 64)：先用ArgSort对key做线性时间的排序，再按1处理；
+ * 3. 其它情况：每INTERLEAVE个key交错地做无分支二分查找，同一层的INTERLEAVE次访存互不依赖，
+ *    缓存未命中可以重叠，而不是像逐个调用BinarySearch.search那样一次只等待一次未命中。
+ */
+public class BatchSearch {
+
+    private static final int INTERLEAVE = 8;
+
+    private static final int SORT_THRESHOLD = 4096;
+
+    /**
+     * results[i] = BinarySearch.lowerBound(sorted, queries[i])
+     */
+    public static void lowerBound(int[] sorted, int[] queries, int[] results) {
+        int q = queries.length;
+        if (results.length < q) throw new IllegalArgumentException("results is shorter than queries");
+
+        if (isSorted(queries)) {
+            walk(sorted, queries, results);
+        } else if (q >= SORT_THRESHOLD && q >= sorted.length >>> 6) {
+            walkSorted(sorted, queries, results);
+        } else {
+            interleave(sorted, queries, results);
+        }
+    }
+
+    /**
+     * results[i]为queries[i]在sorted中的下标，不存在时为-1
+     */
+    public static void search(int[] sorted, int[] queries, int[] results) {
+        lowerBound(sorted, queries, results);
+        int n = sorted.length;
+        for (int i = 0; i < queries.length; i++) {
+            int r = results[i];
+            if (r == n || sorted[r] != queries[i]) results[i] = -1;
+        }
+    }
+
+    // =====================================================
+    // 有序的key：从上一个结果开始指数查找
+    private static void walk(int[] sorted, int[] queries, int[] results) {
+        int pos = 0;
+        for (int i = 0; i < queries.length; i++) {
+            pos = gallop(sorted, pos, queries[i]);
+            results[i] = pos;
+        }
+    }
+
+    // 无序的key：按排列顺序访问，结果写回原位置
+    private static void walkSorted(int[] sorted, int[] queries, int[] results) {
+        int[] perm = ArgSort.argsort(queries);
+        int pos = 0;
+        for (int j : perm) {
+            pos = gallop(sorted, pos, queries[j]);
+            results[j] = pos;
+        }
+    }
+
+    // 已知sorted[0, from)都小于key，返回第一个不小于key的下标
+    private static int gallop(int[] sorted, int from, int key) {
+        int n = sorted.length;
+        int low = from, high = from, step = 1;
+        while (high < n && sorted[high] < key) {
+            low = high + 1;
+            high = low + step;
+            step <<= 1;
+        }
+        if (high > n) high = n;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 交错的无分支二分查找，所有key的折半次数相同，因此可以按层同步推进
+    private static void interleave(int[] sorted, int[] queries, int[] results) {
+        int n = sorted.length;
+        int q = queries.length;
+        if (n == 0) {
+            for (int i = 0; i < q; i++) results[i] = 0;
+            return;
+        }
+
+        int[] base = new int[INTERLEAVE];
+        int[] keys = new int[INTERLEAVE];
+        int i = 0;
+        for (; i + INTERLEAVE <= q; i += INTERLEAVE) {
+            for (int j = 0; j < INTERLEAVE; j++) {
+                base[j] = 0;
+                keys[j] = queries[i + j];
+            }
+
+            for (int len = n; len > 1; ) {
+                int half = len >>> 1;
+                for (int j = 0; j < INTERLEAVE; j++) {
+                    int b = base[j];
+                    base[j] = sorted[b + half - 1] < keys[j] ? b + half : b;
+                }
+                len -= half;
+            }
+
+            for (int j = 0; j < INTERLEAVE; j++) {
+                int b = base[j];
+                results[i + j] = b + (sorted[b] < keys[j] ? 1 : 0);
+            }
+        }
+
+        for (; i < q; i++) {
+            results[i] = BranchlessSearch.lowerBound(sorted, queries[i]);
+        }
+    }
+    // =====================================================
+
+    private static boolean isSorted(int[] arr) {
+        for (int i = 1; i < arr.length; i++) {
+            if (arr[i] < arr[i - 1]) return false;
+        }
+        return true;
+    }
+
+}
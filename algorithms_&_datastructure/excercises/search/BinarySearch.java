@@ -4,10 +4,10 @@ public class BinarySearch {
 
     public static int search(int[] arr, int n) {
         int low = 0;
-        int high = arr.length;
+        int high = arr.length - 1;
 
         while (low <= high) {
-            int mid = (low + high) / 2;
+            int mid = (low + high) >>> 1;
             if (arr[mid] == n) {
                 return mid;
             } else if (arr[mid] > n) {
@@ -19,4 +19,80 @@ public class BinarySearch {
         return -1;
     }
 
+    public static int search(long[] arr, long n) {
+        int low = 0;
+        int high = arr.length - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid] == n) {
+                return mid;
+            } else if (arr[mid] > n) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    // =====================================================
+    // 第一个不小于key的下标，不存在时返回arr.length
+    public static int lowerBound(int[] arr, int key) {
+        int low = 0, high = arr.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    public static int lowerBound(long[] arr, long key) {
+        int low = 0, high = arr.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 第一个大于key的下标，不存在时返回arr.length
+    public static int upperBound(int[] arr, int key) {
+        int low = 0, high = arr.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid] <= key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    public static int upperBound(long[] arr, long key) {
+        int low = 0, high = arr.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid] <= key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 取值在[from, to]之间的元素的下标区间[start, end)，返回{start, end}
+    public static int[] range(int[] arr, int from, int to) {
+        if (from > to) return new int[]{0, 0};
+        return new int[]{lowerBound(arr, from), upperBound(arr, to)};
+    }
+
+    public static int[] range(long[] arr, long from, long to) {
+        if (from > to) return new int[]{0, 0};
+        return new int[]{lowerBound(arr, from), upperBound(arr, to)};
+    }
+    // =====================================================
+
 }
@@ -0,0 +1,93 @@
+package com.jr.test.algorithms.search;
+
+/**
+ * 无分支的二分查找。
+ * <p>
+ * 每一步只根据比较结果决定base是否前进half，循环次数只与数组长度有关(lgn次)，
+ * 比较结果用于条件赋值(JIT生成cmov)而不是条件跳转，不会因为分支预测失败而清空流水线；
+ * 循环结束后只需要一次额外比较。
+ */
+public class BranchlessSearch {
+
+    public static int search(int[] arr, int key) {
+        int i = lowerBound(arr, key);
+        return i < arr.length && arr[i] == key ? i : -1;
+    }
+
+    public static int search(long[] arr, long key) {
+        int i = lowerBound(arr, key);
+        return i < arr.length && arr[i] == key ? i : -1;
+    }
+
+    // =====================================================
+    // 第一个不小于key的下标，不存在时返回arr.length
+    public static int lowerBound(int[] arr, int key) {
+        int n = arr.length;
+        if (n == 0) return 0;
+
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = arr[base + half - 1] < key ? base + half : base;
+            n -= half;
+        }
+        return base + (arr[base] < key ? 1 : 0);
+    }
+
+    public static int lowerBound(long[] arr, long key) {
+        int n = arr.length;
+        if (n == 0) return 0;
+
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = arr[base + half - 1] < key ? base + half : base;
+            n -= half;
+        }
+        return base + (arr[base] < key ? 1 : 0);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 第一个大于key的下标，不存在时返回arr.length
+    public static int upperBound(int[] arr, int key) {
+        int n = arr.length;
+        if (n == 0) return 0;
+
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = arr[base + half - 1] <= key ? base + half : base;
+            n -= half;
+        }
+        return base + (arr[base] <= key ? 1 : 0);
+    }
+
+    public static int upperBound(long[] arr, long key) {
+        int n = arr.length;
+        if (n == 0) return 0;
+
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = arr[base + half - 1] <= key ? base + half : base;
+            n -= half;
+        }
+        return base + (arr[base] <= key ? 1 : 0);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 取值在[from, to]之间的元素的下标区间[start, end)，返回{start, end}
+    public static int[] range(int[] arr, int from, int to) {
+        if (from > to) return new int[]{0, 0};
+        return new int[]{lowerBound(arr, from), upperBound(arr, to)};
+    }
+
+    public static int[] range(long[] arr, long from, long to) {
+        if (from > to) return new int[]{0, 0};
+        return new int[]{lowerBound(arr, from), upperBound(arr, to)};
+    }
+    // =====================================================
+
+}
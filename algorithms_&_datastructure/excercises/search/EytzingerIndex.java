@@ -0,0 +1,87 @@
+package com.jr.test.algorithms.search;
+
+/**
+ * 按Eytzinger(BFS)顺序存放的有序int数组，只读，构建一次后反复查找。
+ * <p>
+ * 结点k的两个子结点为2k和2k + 1，查找时下标只依赖比较结果：k = 2k + (b[k] &lt; key)，没有分支；
+ * 树的前几层集中在数组开头的几个缓存行中，始终留在缓存里，而且第k个结点的后代在同一层中是连续存放的，
+ * 硬件预取器能够跟上访问模式。Java没有软件预取指令，这里依靠布局而不是显式预取。
+ * <p>
+ * lowerBound/upperBound/search返回的是元素在原有序数组中的下标，与BinarySearch一致。
+ */
+public class EytzingerIndex {
+
+    // b[1..n]为Eytzinger顺序的元素，b[0]不使用
+    private final int[] b;
+
+    // rank[k]：b[k]在原有序数组中的下标
+    private final int[] rank;
+
+    private final int n;
+
+    /**
+     * @param sorted 升序排列的数组
+     */
+    public EytzingerIndex(int[] sorted) {
+        this.n = sorted.length;
+        this.b = new int[n + 1];
+        this.rank = new int[n + 1];
+        build(sorted, 0, 1);
+    }
+
+    // 中序遍历完全二叉树，依次填入有序数组中的元素，返回下一个待填入的下标
+    private int build(int[] sorted, int i, int k) {
+        if (k <= n) {
+            i = build(sorted, i, 2 * k);
+            b[k] = sorted[i];
+            rank[k] = i++;
+            i = build(sorted, i, 2 * k + 1);
+        }
+        return i;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    // 第一个不小于key的元素在原数组中的下标，不存在时返回size()
+    public int lowerBound(int key) {
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (b[k] < key ? 1 : 0);
+        }
+        // 去掉末尾连续的1(向右走的步数)以及最后一次向左走，得到最后一个不小于key的结点
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? n : rank[k];
+    }
+
+    // 第一个大于key的元素在原数组中的下标，不存在时返回size()
+    public int upperBound(int key) {
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (b[k] <= key ? 1 : 0);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? n : rank[k];
+    }
+
+    public int search(int key) {
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (b[k] < key ? 1 : 0);
+        }
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k != 0 && b[k] == key ? rank[k] : -1;
+    }
+
+    public boolean contains(int key) {
+        return search(key) >= 0;
+    }
+
+    // 取值在[from, to]之间的元素的下标区间[start, end)，返回{start, end}
+    public int[] range(int from, int to) {
+        if (from > to) return new int[]{0, 0};
+        return new int[]{lowerBound(from), upperBound(to)};
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.jr.test.algorithms.search;
+
+/**
+ * 插值查找，适用于取值大致均匀分布的有序数组。
+ * <p>
+ * 按key在[arr[low], arr[high]]中的比例估计位置，均匀分布时期望只需o(lglgn)次探测；
+ * 为了避免在分布不均匀时退化成o(n)，插值探测的次数限制在lgn次，之后改为二分。
+ */
+public class InterpolationSearch {
+
+    public static int search(int[] arr, int key) {
+        int i = lowerBound(arr, key);
+        return i < arr.length && arr[i] == key ? i : -1;
+    }
+
+    // 第一个不小于key的下标，不存在时返回arr.length
+    public static int lowerBound(int[] arr, int key) {
+        // 不变式：结果在[low, high + 1]之间，且arr[high + 1] >= key
+        int low = 0, high = arr.length - 1;
+        int interpolations = 32 - Integer.numberOfLeadingZeros(arr.length);
+        while (low <= high) {
+            int lv = arr[low], hv = arr[high];
+            if (key <= lv) return low;
+            if (key > hv) return high + 1;
+
+            // lv < key <= hv
+            int pos;
+            if (interpolations-- > 0) {
+                pos = low + (int) (((double) key - lv) / ((double) hv - lv) * (high - low));
+                pos = Math.max(low, Math.min(high, pos));
+            } else {
+                pos = (low + high) >>> 1;
+            }
+
+            if (arr[pos] < key) low = pos + 1;
+            else high = pos - 1;
+        }
+        return low;
+    }
+
+    public static int search(long[] arr, long key) {
+        int i = lowerBound(arr, key);
+        return i < arr.length && arr[i] == key ? i : -1;
+    }
+
+    // 第一个不小于key的下标，不存在时返回arr.length
+    public static int lowerBound(long[] arr, long key) {
+        // 不变式：结果在[low, high + 1]之间，且arr[high + 1] >= key
+        int low = 0, high = arr.length - 1;
+        int interpolations = 32 - Integer.numberOfLeadingZeros(arr.length);
+        while (low <= high) {
+            long lv = arr[low], hv = arr[high];
+            if (key <= lv) return low;
+            if (key > hv) return high + 1;
+
+            // lv < key <= hv
+            int pos;
+            if (interpolations-- > 0) {
+                pos = low + (int) (((double) key - lv) / ((double) hv - lv) * (high - low));
+                pos = Math.max(low, Math.min(high, pos));
+            } else {
+                pos = (low + high) >>> 1;
+            }
+
+            if (arr[pos] < key) low = pos + 1;
+            else high = pos - 1;
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.jr.test.algorithms.search;
+
+import java.util.Arrays;
+
+/**
+ * 只读有序int数组上的学习型索引(分段线性模型 + 基数表，类似RadixSpline)。
+ * <p>
+ * 构建：对每个不同的key取其第一次出现的下标，用"收缩锥"(shrinking cone)贪心地把(key, 下标)点划分成若干段，
+ * 每段用一条直线拟合，保证段内每个点的预测下标与实际下标相差不超过error；
+ * 再以key(减去最小值后)的高radixBits位为下标建一张表，直接定位到可能包含key的少数几段。
+ * <p>
+ * 查找：查表并在少数几段中二分找到所在段，用直线预测下标，只在[pred - error, pred + error]中二分；
+ * 预测不准时(例如key不在数组中且恰好落在两段之间)从窗口边界向外指数查找，结果总是正确的。
+ * <p>
+ * 模型只保存每段的起始key、起始下标和斜率，memoryBytes()报告索引本身占用的内存(不含原数组)。
+ */
+public class LearnedIndex {
+
+    public static final int DEFAULT_ERROR = 32;
+
+    private final int[] arr;
+    private final int n;
+    private final int error;
+
+    // 第i段：起始key为segKey[i]，预测下标为segPos[i] + slope[i] * (key - segKey[i])
+    private final long[] segKey;
+    private final int[] segPos;
+    private final double[] slope;
+    private final int segments;
+
+    // table[p]为高位前缀小于p的段数，p = (key - min) >>> shift
+    private final int[] table;
+    private final int shift;
+    private final long min;
+
+    public LearnedIndex(int[] sorted) {
+        this(sorted, DEFAULT_ERROR);
+    }
+
+    /**
+     * @param sorted 升序排列的数组，构建后不能再修改
+     * @param error  预测下标允许的最大误差
+     */
+    public LearnedIndex(int[] sorted, int error) {
+        if (error < 0) throw new IllegalArgumentException("error: " + error);
+        this.arr = sorted;
+        this.n = sorted.length;
+        this.error = error;
+
+        long[] keys = new long[Math.max(1, n)];
+        int[] pos = new int[Math.max(1, n)];
+        double[] slopes = new double[Math.max(1, n)];
+        int count = 0;
+
+        // 收缩锥：当前段起点为(k0, p0)，[lo, hi]为仍然满足误差要求的斜率范围
+        long k0 = 0;
+        int p0 = 0;
+        double lo = 0, hi = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (i > 0 && sorted[i] == sorted[i - 1]) continue;
+
+            long k = sorted[i];
+            if (count > 0) {
+                double dx = (double) k - (double) k0;
+                double nlo = Math.max(lo, (i - error - p0) / dx);
+                double nhi = Math.min(hi, (i + error - p0) / dx);
+                if (nlo <= nhi) {
+                    lo = nlo;
+                    hi = nhi;
+                    continue;
+                }
+                slopes[count - 1] = slopeOf(lo, hi);
+            }
+
+            keys[count] = k0 = k;
+            pos[count] = p0 = i;
+            count++;
+            lo = 0;
+            hi = Double.POSITIVE_INFINITY;
+        }
+        if (count > 0) slopes[count - 1] = slopeOf(lo, hi);
+
+        this.segments = count;
+        this.segKey = Arrays.copyOf(keys, count);
+        this.segPos = Arrays.copyOf(pos, count);
+        this.slope = Arrays.copyOf(slopes, count);
+
+        // 表的大小约为段数的两倍
+        int radixBits = Math.min(20, 33 - Integer.numberOfLeadingZeros(Math.max(1, count)));
+        this.min = n == 0 ? 0 : sorted[0];
+        long range = n == 0 ? 0 : (long) sorted[n - 1] - min;
+        int rangeBits = 64 - Long.numberOfLeadingZeros(range);
+        this.shift = Math.max(0, rangeBits - radixBits);
+
+        int size = (int) (range >>> shift) + 2;
+        this.table = new int[size];
+        for (int s = 0; s < count; s++) {
+            table[(int) ((segKey[s] - min) >>> shift) + 1]++;
+        }
+        for (int p = 1; p < size; p++) {
+            table[p] += table[p - 1];
+        }
+    }
+
+    private static double slopeOf(double lo, double hi) {
+        return hi == Double.POSITIVE_INFINITY ? lo : (lo + hi) / 2;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public int getSegmentCount() {
+        return segments;
+    }
+
+    public int getError() {
+        return error;
+    }
+
+    /**
+     * 索引本身占用的内存(字节)，按对象头16字节、数组头16字节估算，不含原数组
+     */
+    public long memoryBytes() {
+        return 16 + 4 * 16 + 16
+                + (long) segKey.length * 8 + (long) segPos.length * 4 + (long) slope.length * 8 + (long) table.length * 4;
+    }
+
+    // 第一个不小于key的下标，不存在时返回size()
+    public int lowerBound(int key) {
+        if (n == 0 || key <= arr[0]) return 0;
+        if (key > arr[n - 1]) return n;
+
+        int s = segment(key);
+        long pred = segPos[s] + (long) (slope[s] * ((double) key - (double) segKey[s]));
+        int low = (int) Math.max(0, Math.min(n, pred - error));
+        int high = (int) Math.max(0, Math.min(n, pred + error + 1));
+
+        // 保证结果在[low, high]之间：arr[low - 1] < key，arr[high] >= key
+        int step = 1;
+        while (low > 0 && arr[low - 1] >= key) {
+            high = low - 1;
+            low = Math.max(0, low - step);
+            step <<= 1;
+        }
+        while (high < n && arr[high] < key) {
+            low = high + 1;
+            high = Math.min(n, high + step);
+            step <<= 1;
+        }
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    public int search(int key) {
+        int i = lowerBound(key);
+        return i < n && arr[i] == key ? i : -1;
+    }
+
+    public boolean contains(int key) {
+        return search(key) >= 0;
+    }
+
+    // 最后一个起始key不大于key的段，调用前保证arr[0] < key <= arr[n - 1]
+    private int segment(int key) {
+        int p = (int) (((long) key - min) >>> shift);
+        // 前缀小于p的段都满足条件，只需在前缀等于p的段中查找
+        int low = Math.max(0, table[p] - 1), high = table[p + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (segKey[mid] <= key) low = mid + 1;
+            else high = mid;
+        }
+        return low - 1;
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.jr.test.algorithms.sorts;
+
+/**
+ * 根据输入的特征选择排序算法。
+ * <p>
+ * 排序前先分析输入：长度、有序段的个数(扫描到超过上限为止)、取值范围(一次遍历求最小值和最大值)，
+ * 以及在等间隔抽取的样本上估计的重复率，然后按以下顺序选择：
+ * <pre>
+ * 长度很小                    -&gt; 插入排序
+ * 由少数有序段组成(含已排序、逆序) -&gt; RunMergeSort
+ * 取值范围不超过长度            -&gt; 计数排序
+ * 重复率高                    -&gt; IntroSort(三路划分)
+ * 长度较大                    -&gt; RadixSort(LSD)
+ * 其它                        -&gt; IntroSort
+ * </pre>
+ * sort返回本次的选择结果，便于调用方记录日志。
+ */
+public class AdaptiveSort {
+
+    public enum Algorithm {
+        NONE, INSERTION, RUN_MERGE, COUNTING, RADIX, QUICK
+    }
+
+    private static final int INSERTION_SORT_THRESHOLD = 48;
+
+    // 有序段不超过该值时使用RunMergeSort
+    private static final int MAX_RUN_COUNT = 64;
+
+    // 计数排序的计数数组最大长度
+    private static final int MAX_COUNTING_RANGE = 1 << 22;
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    // 样本中重复元素的比例超过该值时使用三路划分的快速排序
+    private static final double HIGH_DUPLICATE_RATIO = 0.5;
+
+    private static final int RADIX_SORT_THRESHOLD = 1 << 12;
+
+    /**
+     * 分析结果
+     */
+    public static class Decision {
+
+        private final Algorithm algorithm;
+        private final int length;
+        private final int runs;
+        private final int min, max;
+        private final double duplicateRatio;
+
+        Decision(Algorithm algorithm, int length, int runs, int min, int max, double duplicateRatio) {
+            this.algorithm = algorithm;
+            this.length = length;
+            this.runs = runs;
+            this.min = min;
+            this.max = max;
+            this.duplicateRatio = duplicateRatio;
+        }
+
+        public Algorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * 有序段的个数，超过MAX_RUN_COUNT后不再继续统计，此时为MAX_RUN_COUNT + 1
+         */
+        public int getRuns() {
+            return runs;
+        }
+
+        public int getMin() {
+            return min;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * max - min + 1，空数组为0
+         */
+        public long getRange() {
+            return length == 0 ? 0 : (long) max - min + 1;
+        }
+
+        /**
+         * 样本中与前一个元素重复的比例
+         */
+        public double getDuplicateRatio() {
+            return duplicateRatio;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(getClass().getSimpleName());
+            sb.append(" [");
+            sb.append("algorithm=").append(algorithm);
+            sb.append(", length=").append(length);
+            sb.append(", runs=").append(runs);
+            sb.append(", min=").append(min);
+            sb.append(", max=").append(max);
+            sb.append(", duplicateRatio=").append(duplicateRatio);
+            sb.append("]");
+            return sb.toString();
+        }
+    }
+
+    public static Decision sort(int[] arr) {
+        Decision decision = analyze(arr);
+        switch (decision.getAlgorithm()) {
+            case INSERTION:
+                IntroSort.insertionSort(arr, 0, arr.length - 1);
+                break;
+            case RUN_MERGE:
+                RunMergeSort.sort(arr);
+                break;
+            case COUNTING:
+                countingSort(arr, decision.getMin(), decision.getMax());
+                break;
+            case RADIX:
+                RadixSort.lsdSort(arr);
+                break;
+            case QUICK:
+                IntroSort.sort(arr);
+                break;
+            default:
+                break;
+        }
+        return decision;
+    }
+
+    public static Decision analyze(int[] arr) {
+        int length = arr.length;
+        if (length == 0) return new Decision(Algorithm.NONE, 0, 0, 0, 0, 0);
+
+        int min = arr[0], max = arr[0];
+        for (int i = 1; i < length; i++) {
+            int v = arr[i];
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        long range = (long) max - min + 1;
+
+        // 只有一个非降的有序段时已经有序
+        int runs = countRuns(arr, MAX_RUN_COUNT);
+        if (runs == 1 && arr[0] <= arr[length - 1])
+            return new Decision(Algorithm.NONE, length, runs, min, max, 0);
+
+        if (length <= INSERTION_SORT_THRESHOLD)
+            return new Decision(Algorithm.INSERTION, length, runs, min, max, 0);
+
+        if (runs <= MAX_RUN_COUNT)
+            return new Decision(Algorithm.RUN_MERGE, length, runs, min, max, 0);
+
+        if (range <= length && range <= MAX_COUNTING_RANGE)
+            return new Decision(Algorithm.COUNTING, length, runs, min, max, 0);
+
+        double duplicateRatio = sampleDuplicateRatio(arr);
+        if (duplicateRatio >= HIGH_DUPLICATE_RATIO)
+            return new Decision(Algorithm.QUICK, length, runs, min, max, duplicateRatio);
+
+        if (length >= RADIX_SORT_THRESHOLD)
+            return new Decision(Algorithm.RADIX, length, runs, min, max, duplicateRatio);
+
+        return new Decision(Algorithm.QUICK, length, runs, min, max, duplicateRatio);
+    }
+
+    /**
+     * 统计单调(非降或严格降)段的个数，超过limit时返回limit + 1
+     */
+    private static int countRuns(int[] arr, int limit) {
+        int length = arr.length;
+        int runs = 0;
+        for (int i = 0; i < length; ) {
+            if (++runs > limit) return runs;
+
+            int j = i + 1;
+            if (j < length && arr[j] < arr[i]) {
+                while (j < length && arr[j] < arr[j - 1]) j++;
+            } else {
+                while (j < length && arr[j] >= arr[j - 1]) j++;
+            }
+            i = j;
+        }
+        return runs;
+    }
+
+    private static double sampleDuplicateRatio(int[] arr) {
+        int size = Math.min(SAMPLE_SIZE, arr.length);
+        int step = arr.length / size;
+        int[] sample = new int[size];
+        for (int i = 0; i < size; i++) {
+            sample[i] = arr[i * step];
+        }
+        IntroSort.sort(sample);
+
+        int duplicates = 0;
+        for (int i = 1; i < size; i++) {
+            if (sample[i] == sample[i - 1]) duplicates++;
+        }
+        return (double) duplicates / size;
+    }
+
+    // 只需计数后按顺序写回，不需要SortAllInOne.countSort中的辅助数组
+    private static void countingSort(int[] arr, int min, int max) {
+        int[] count = new int[max - min + 1];
+        for (int v : arr) {
+            count[v - min]++;
+        }
+
+        int k = 0;
+        for (int i = 0; i < count.length; i++) {
+            for (int c = count[i]; c > 0; c--) {
+                arr[k++] = min + i;
+            }
+        }
+    }
+
+}
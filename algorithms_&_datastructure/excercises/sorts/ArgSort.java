@@ -0,0 +1,190 @@
+package com.jr.test.algorithms.sorts;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * 列式数据的按键排序。
+ * <p>
+ * argsort返回排列perm，使得keys[perm[0]] &lt;= keys[perm[1]] &lt;= ...，相等的键保持原有顺序(稳定)，keys本身不变。
+ * coSort按键列排序，并把其余各列按同一排列原地移动。
+ * <p>
+ * int键：把键和下标打包成一个long(键在高32位，下标在低32位)，只对高4个字节做LSD基数排序；
+ * long键：键数组和下标数组成对地做8趟LSD基数排序。两者都不装箱，排序时间与行数成线性关系。
+ */
+public class ArgSort {
+
+    public static int[] argsort(int[] keys) {
+        int length = keys.length;
+        long[] packed = new long[length];
+        for (int i = 0; i < length; i++) {
+            packed[i] = ((long) keys[i] << 32) | i;
+        }
+
+        RadixSort.lsdSort(packed, new long[length], 4);
+
+        int[] perm = new int[length];
+        for (int i = 0; i < length; i++) {
+            perm[i] = (int) packed[i];
+        }
+        return perm;
+    }
+
+    public static int[] argsort(long[] keys) {
+        int length = keys.length;
+        int[] perm = new int[length];
+        for (int i = 0; i < length; i++) {
+            perm[i] = i;
+        }
+        if (length < 2) return perm;
+
+        int[][] count = new int[8][256];
+        for (long v : keys) {
+            for (int pass = 0; pass < 7; pass++) {
+                count[pass][(int) (v >>> (pass << 3)) & 0xFF]++;
+            }
+            count[7][(int) (v >>> 56) ^ 0x80]++;
+        }
+
+        // 第一趟直接从keys读取，之后在两组辅助数组之间交替
+        long[] srcKey = keys, dstKey = new long[length], spareKey = null;
+        int[] srcIdx = perm, dstIdx = new int[length];
+        for (int pass = 0; pass < 8; pass++) {
+            int shift = pass << 3;
+            int flip = pass == 7 ? 0x80 : 0;
+            int[] c = count[pass];
+
+            if (c[((int) (srcKey[0] >>> shift) & 0xFF) ^ flip] == length) continue;
+
+            int sum = 0;
+            for (int b = 0; b < 256; b++) {
+                int t = c[b];
+                c[b] = sum;
+                sum += t;
+            }
+            for (int i = 0; i < length; i++) {
+                long v = srcKey[i];
+                int d = c[((int) (v >>> shift) & 0xFF) ^ flip]++;
+                dstKey[d] = v;
+                dstIdx[d] = srcIdx[i];
+            }
+
+            long[] tk = srcKey == keys ? spareKey : srcKey;
+            srcKey = dstKey;
+            dstKey = tk != null ? tk : new long[length];
+            int[] ti = srcIdx;
+            srcIdx = dstIdx;
+            dstIdx = ti;
+        }
+
+        return srcIdx;
+    }
+
+    /**
+     * 按keys排序，columns中的每一列(基本类型数组或对象数组，长度与keys相同)随keys一起移动
+     */
+    public static void coSort(int[] keys, Object... columns) {
+        checkColumns(keys.length, columns);
+        int[] perm = argsort(keys);
+
+        int[] buf = new int[keys.length];
+        permute(perm, keys, buf);
+        permuteColumns(perm, columns, buf);
+    }
+
+    public static void coSort(long[] keys, Object... columns) {
+        checkColumns(keys.length, columns);
+        int[] perm = argsort(keys);
+
+        permute(perm, keys, new long[keys.length]);
+        permuteColumns(perm, columns, null);
+    }
+
+    private static void checkColumns(int length, Object[] columns) {
+        for (Object column : columns) {
+            if (null == column || !column.getClass().isArray())
+                throw new IllegalArgumentException("column is not an array: " + column);
+            if (Array.getLength(column) != length)
+                throw new IllegalArgumentException("column length differs from keys length " + length);
+        }
+    }
+
+    // 同一类型的列共用一个辅助数组
+    private static void permuteColumns(int[] perm, Object[] columns, int[] intBuf) {
+        int length = perm.length;
+        long[] longBuf = null;
+        double[] doubleBuf = null;
+        Object[] objBuf = null;
+        for (Object column : columns) {
+            if (column instanceof int[]) {
+                if (null == intBuf) intBuf = new int[length];
+                permute(perm, (int[]) column, intBuf);
+            } else if (column instanceof long[]) {
+                if (null == longBuf) longBuf = new long[length];
+                permute(perm, (long[]) column, longBuf);
+            } else if (column instanceof double[]) {
+                if (null == doubleBuf) doubleBuf = new double[length];
+                permute(perm, (double[]) column, doubleBuf);
+            } else if (column instanceof Object[]) {
+                if (null == objBuf) objBuf = new Object[length];
+                permute(perm, (Object[]) column, objBuf);
+            } else {
+                permuteOther(perm, column);
+            }
+        }
+    }
+
+    //========================================
+    // column[i] = 原column[perm[i]]，buf为与column等长的辅助数组
+
+    public static void permute(int[] perm, int[] column, int[] buf) {
+        for (int i = 0; i < perm.length; i++) {
+            buf[i] = column[perm[i]];
+        }
+        System.arraycopy(buf, 0, column, 0, perm.length);
+    }
+
+    public static void permute(int[] perm, long[] column, long[] buf) {
+        for (int i = 0; i < perm.length; i++) {
+            buf[i] = column[perm[i]];
+        }
+        System.arraycopy(buf, 0, column, 0, perm.length);
+    }
+
+    public static void permute(int[] perm, double[] column, double[] buf) {
+        for (int i = 0; i < perm.length; i++) {
+            buf[i] = column[perm[i]];
+        }
+        System.arraycopy(buf, 0, column, 0, perm.length);
+    }
+
+    public static void permute(int[] perm, Object[] column, Object[] buf) {
+        for (int i = 0; i < perm.length; i++) {
+            buf[i] = column[perm[i]];
+        }
+        System.arraycopy(buf, 0, column, 0, perm.length);
+        Arrays.fill(buf, 0, perm.length, null);
+    }
+
+    // 其余基本类型(float/short/char/byte/boolean)的列，拷贝一份后按perm取回
+    private static void permuteOther(int[] perm, Object column) {
+        int length = perm.length;
+        if (column instanceof float[]) {
+            float[] col = (float[]) column, copy = col.clone();
+            for (int i = 0; i < length; i++) col[i] = copy[perm[i]];
+        } else if (column instanceof short[]) {
+            short[] col = (short[]) column, copy = col.clone();
+            for (int i = 0; i < length; i++) col[i] = copy[perm[i]];
+        } else if (column instanceof char[]) {
+            char[] col = (char[]) column, copy = col.clone();
+            for (int i = 0; i < length; i++) col[i] = copy[perm[i]];
+        } else if (column instanceof byte[]) {
+            byte[] col = (byte[]) column, copy = col.clone();
+            for (int i = 0; i < length; i++) col[i] = copy[perm[i]];
+        } else {
+            boolean[] col = (boolean[]) column, copy = col.clone();
+            for (int i = 0; i < length; i++) col[i] = copy[perm[i]];
+        }
+    }
+
+}
@@ -0,0 +1,363 @@
+package com.jr.test.algorithms.sorts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 外部归并排序：对超过堆大小的定长二进制记录文件(int或long，大端序)排序，结果写到另一个文件。
+ * <p>
+ * 1. 切分：按内存预算把输入切成若干块，多个线程并行地把各块通过MappedByteBuffer读入数组，
+ * 用RadixSort排序后再通过MappedByteBuffer写成一个有序的临时文件(run)；
+ * 2. 归并：每个run分配一个大的读缓冲区顺序读取，用败者树做k路归并，输出同样经过大缓冲区顺序写出；
+ * run的个数超过单趟归并的最大路数时先分组归并成更少的run。
+ * <p>
+ * 只适用于本地磁盘上的文件；临时文件在排序结束后删除。
+ */
+public class ExternalSort {
+
+    public enum Phase {
+        SORT_RUNS, MERGE
+    }
+
+    public interface ProgressListener {
+        /**
+         * @param done  当前阶段已处理的记录数；多趟归并时每一趟重新计数
+         * @param total 记录总数
+         */
+        void onProgress(Phase phase, long done, long total);
+    }
+
+    private static final ProgressListener NO_PROGRESS = (phase, done, total) -> {
+    };
+
+    // 归并时每个run的读缓冲区的最小值和最大值
+    private static final int MIN_READ_BUFFER = 64 * 1024;
+    private static final int MAX_READ_BUFFER = 8 * 1024 * 1024;
+
+    private static final int WRITE_BUFFER = 8 * 1024 * 1024;
+
+    // 合并时每写出这么多条记录报告一次进度
+    private static final long PROGRESS_INTERVAL = 1 << 20;
+
+    private final long memoryBudget;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private Path tempDir;
+    private ProgressListener listener = NO_PROGRESS;
+
+    /**
+     * @param memoryBudget 排序可使用的堆内存(字节)，同时决定每块的大小和归并缓冲区的大小
+     */
+    public ExternalSort(long memoryBudget) {
+        if (memoryBudget < 2 * MIN_READ_BUFFER)
+            throw new IllegalArgumentException("memoryBudget is too small: " + memoryBudget);
+        this.memoryBudget = memoryBudget;
+    }
+
+    public ExternalSort setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism: " + parallelism);
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * 临时文件所在的目录，默认与输出文件相同
+     */
+    public ExternalSort setTempDir(Path tempDir) {
+        this.tempDir = tempDir;
+        return this;
+    }
+
+    public ExternalSort setProgressListener(ProgressListener listener) {
+        this.listener = null == listener ? NO_PROGRESS : listener;
+        return this;
+    }
+
+    public void sortInts(Path input, Path output) throws IOException {
+        sort(input, output, Integer.BYTES);
+    }
+
+    public void sortLongs(Path input, Path output) throws IOException {
+        sort(input, output, Long.BYTES);
+    }
+
+    private void sort(Path input, Path output, int width) throws IOException {
+        long size = Files.size(input);
+        if (size % width != 0)
+            throw new IllegalArgumentException(input + " is not a multiple of " + width + " bytes");
+
+        Path dir = null != tempDir ? tempDir : output.toAbsolutePath().getParent();
+        // 所有创建过的临时文件，结束时删除
+        List<Path> temps = new ArrayList<>();
+        try {
+            List<Path> runs = createRuns(input, size / width, width, dir, temps);
+
+            long total = size / width;
+            int fanIn = (int) Math.max(2, Math.min(1024, memoryBudget / MIN_READ_BUFFER - 1));
+            while (runs.size() > fanIn) {
+                List<Path> next = new ArrayList<>();
+                // 一趟中的各组接着计数，进度在一趟之内单调递增
+                long done = 0;
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    List<Path> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                    Path merged = createTempFile(dir, temps);
+                    next.add(merged);
+                    done = merge(group, merged, width, done, total);
+                    for (Path run : group) Files.delete(run);
+                }
+                runs = next;
+            }
+
+            if (runs.size() == 1)
+                Files.move(runs.get(0), output, StandardCopyOption.REPLACE_EXISTING);
+            else
+                merge(runs, output, width, 0, total);
+        } finally {
+            for (Path temp : temps) Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Path createTempFile(Path dir, List<Path> temps) throws IOException {
+        Path temp = Files.createTempFile(dir, "run", ".bin");
+        temps.add(temp);
+        return temp;
+    }
+
+    //========================================
+    // 切分阶段
+
+    private List<Path> createRuns(Path input, long records, int width, Path dir, List<Path> temps) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        if (records == 0) {
+            runs.add(createTempFile(dir, temps));
+            return runs;
+        }
+
+        // 每个线程同时持有待排序数组和基数排序的辅助数组
+        long chunk = memoryBudget / ((long) parallelism * width * 2);
+        chunk = Math.max(1, Math.min(chunk, (Integer.MAX_VALUE - 8) / width));
+
+        for (long offset = 0; offset < records; offset += chunk) {
+            runs.add(createTempFile(dir, temps));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, runs.size()));
+        AtomicLong done = new AtomicLong();
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i++) {
+                long from = i * chunk;
+                int count = (int) Math.min(chunk, records - from);
+                Path run = runs.get(i);
+                futures.add(executor.submit(() -> {
+                    sortChunk(in, from, count, width, run);
+                    listener.onProgress(Phase.SORT_RUNS, done.addAndGet(count), records);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while sorting runs", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return runs;
+    }
+
+    private static void sortChunk(FileChannel in, long from, int count, int width, Path run) throws IOException {
+        long bytes = (long) count * width;
+        MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, from * width, bytes);
+
+        try (FileChannel out = FileChannel.open(run, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            if (width == Integer.BYTES) {
+                int[] arr = new int[count];
+                src.asIntBuffer().get(arr);
+                RadixSort.lsdSort(arr, new int[count]);
+                dst.asIntBuffer().put(arr);
+            } else {
+                long[] arr = new long[count];
+                src.asLongBuffer().get(arr);
+                RadixSort.lsdSort(arr, new long[count]);
+                dst.asLongBuffer().put(arr);
+            }
+        }
+    }
+
+    //========================================
+    // 归并阶段
+
+    /**
+     * 归并runs到output，done为这一趟之前各组已经写出的记录数，返回加上本组之后的记录数
+     */
+    private long merge(List<Path> runs, Path output, int width, long done, long total) throws IOException {
+        int k = runs.size();
+        int bufferSize = (int) Math.max(MIN_READ_BUFFER, Math.min(MAX_READ_BUFFER, memoryBudget / (k + 1)));
+        bufferSize -= bufferSize % width;
+
+        RunReader[] readers = new RunReader[k];
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < k; i++) {
+                readers[i] = new RunReader(runs.get(i), width, bufferSize);
+            }
+
+            LoserTree tree = new LoserTree(readers);
+            ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER - WRITE_BUFFER % width);
+            long written = 0;
+            while (!tree.isEmpty()) {
+                if (!buf.hasRemaining()) flush(out, buf);
+
+                long v = tree.poll();
+                if (width == Integer.BYTES) buf.putInt((int) v);
+                else buf.putLong(v);
+
+                if (++written % PROGRESS_INTERVAL == 0) listener.onProgress(Phase.MERGE, done + written, total);
+            }
+            flush(out, buf);
+            listener.onProgress(Phase.MERGE, done + written, total);
+            return done + written;
+        } finally {
+            for (RunReader reader : readers) {
+                if (null != reader) reader.close();
+            }
+        }
+    }
+
+    private static void flush(FileChannel out, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * 用大缓冲区顺序读取一个run
+     */
+    private static class RunReader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+        private final int width;
+
+        RunReader(Path run, int width, int bufferSize) throws IOException {
+            this.channel = FileChannel.open(run, StandardOpenOption.READ);
+            this.buf = ByteBuffer.allocateDirect(bufferSize);
+            this.width = width;
+            buf.flip();
+        }
+
+        boolean hasNext() throws IOException {
+            if (buf.hasRemaining()) return true;
+
+            buf.clear();
+            while (buf.hasRemaining() && channel.read(buf) > 0) ;
+            buf.flip();
+            return buf.hasRemaining();
+        }
+
+        long next() {
+            return width == Integer.BYTES ? buf.getInt() : buf.getLong();
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * 败者树：tree[0]为当前最小值所在的run，tree[1, k)保存各个内部结点上比赛的败者；
+     * 取出最小值后只需沿该叶子到根的路径重赛，每条记录比较lgk次。
+     */
+    private static class LoserTree {
+
+        private final RunReader[] readers;
+        private final long[] keys;
+        private final boolean[] exhausted;
+        private final int[] tree;
+        private final int k;
+
+        LoserTree(RunReader[] readers) throws IOException {
+            this.readers = readers;
+            this.k = readers.length;
+            this.keys = new long[k];
+            this.exhausted = new boolean[k];
+            this.tree = new int[k];
+
+            for (int i = 0; i < k; i++) {
+                advance(i);
+            }
+
+            // 自底向上比赛，结点n的子结点为2n和2n + 1，结点k + i为第i个叶子
+            int[] winner = new int[2 * k];
+            for (int i = 0; i < k; i++) {
+                winner[k + i] = i;
+            }
+            for (int n = k - 1; n >= 1; n--) {
+                int l = winner[2 * n], r = winner[2 * n + 1];
+                if (beats(l, r)) {
+                    winner[n] = l;
+                    tree[n] = r;
+                } else {
+                    winner[n] = r;
+                    tree[n] = l;
+                }
+            }
+            tree[0] = k == 1 ? 0 : winner[1];
+        }
+
+        boolean isEmpty() {
+            return exhausted[tree[0]];
+        }
+
+        long poll() throws IOException {
+            int w = tree[0];
+            long v = keys[w];
+            advance(w);
+
+            for (int n = (w + k) >>> 1; n >= 1; n >>>= 1) {
+                if (beats(tree[n], w)) {
+                    int t = tree[n];
+                    tree[n] = w;
+                    w = t;
+                }
+            }
+            tree[0] = w;
+            return v;
+        }
+
+        private void advance(int i) throws IOException {
+            if (readers[i].hasNext())
+                keys[i] = readers[i].next();
+            else
+                exhausted[i] = true;
+        }
+
+        // a是否胜过b：已读完的run总是失败，相等时下标小的获胜
+        private boolean beats(int a, int b) {
+            if (exhausted[b]) return !exhausted[a] || a < b;
+            if (exhausted[a]) return false;
+            return keys[a] < keys[b] || keys[a] == keys[b] && a < b;
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.jr.test.algorithms.sorts;
+
+/**
+ * 内省排序：SortAllInOne.quickSort的生产版本。
+ * <p>
+ * 1. 基准值取三数中值，区间较大时取九数中值(ninther)，已排序/逆序输入不再退化；
+ * 2. 三路划分(&lt; pivot | == pivot | &gt; pivot)，大量重复值时等值区间直接跳过；
+ * 3. 只递归较小的一侧，较大的一侧在循环中继续处理，栈深度为o(lgn)；
+ * 4. 小区间使用插入排序；
+ * 5. 递归深度超过2*lgn时改用堆排序，最坏时间复杂度为o(nlgn)。
+ */
+public class IntroSort {
+
+    // 小于该长度的区间使用插入排序
+    static final int INSERTION_SORT_THRESHOLD = 24;
+
+    // 大于该长度的区间使用九数中值选取基准
+    private static final int NINTHER_THRESHOLD = 128;
+
+    public static void sort(int[] arr) {
+        sort(arr, 0, arr.length - 1);
+    }
+
+    /**
+     * 对闭区间[low, high]排序，参数含义与SortAllInOne.quickSort一致
+     */
+    public static void sort(int[] arr, int low, int high) {
+        if (low < high)
+            introSort(arr, low, high, depthLimit(high - low + 1));
+    }
+
+    static int depthLimit(int length) {
+        return 2 * (31 - Integer.numberOfLeadingZeros(length));
+    }
+
+    private static void introSort(int[] arr, int low, int high, int depth) {
+        while (high - low + 1 > INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(arr, low, high);
+                return;
+            }
+
+            int pivot = choosePivot(arr, low, high);
+
+            // 三路划分：[low, lt) < pivot, [lt, i) == pivot, (gt, high] > pivot
+            int lt = low, gt = high, i = low;
+            while (i <= gt) {
+                int v = arr[i];
+                if (v < pivot) {
+                    arr[i++] = arr[lt];
+                    arr[lt++] = v;
+                } else if (v > pivot) {
+                    arr[i] = arr[gt];
+                    arr[gt--] = v;
+                } else {
+                    i++;
+                }
+            }
+
+            // 递归较短的一侧，较长的一侧继续循环(尾调用消除)
+            if (lt - low < high - gt) {
+                introSort(arr, low, lt - 1, depth);
+                low = gt + 1;
+            } else {
+                introSort(arr, gt + 1, high, depth);
+                high = lt - 1;
+            }
+        }
+        insertionSort(arr, low, high);
+    }
+
+    private static int choosePivot(int[] arr, int low, int high) {
+        int mid = (low + high) >>> 1;
+        if (high - low + 1 > NINTHER_THRESHOLD) {
+            int step = (high - low + 1) >>> 3;
+            int a = median(arr[low], arr[low + step], arr[low + 2 * step]);
+            int b = median(arr[mid - step], arr[mid], arr[mid + step]);
+            int c = median(arr[high - 2 * step], arr[high - step], arr[high]);
+            return median(a, b, c);
+        }
+        return median(arr[low], arr[mid], arr[high]);
+    }
+
+    private static int median(int a, int b, int c) {
+        return a < b
+                ? (b < c ? b : (a < c ? c : a))
+                : (a < c ? a : (b < c ? c : b));
+    }
+
+    static void insertionSort(int[] arr, int low, int high) {
+        int curr, preInx;
+        for (int i = low + 1; i <= high; i++) {
+            curr = arr[i];
+            preInx = i - 1;
+            while (preInx >= low && curr < arr[preInx]) {
+                arr[preInx + 1] = arr[preInx--];
+            }
+
+            arr[preInx + 1] = curr;
+        }
+    }
+
+    static void heapSort(int[] arr, int low, int high) {
+        int length = high - low + 1;
+        for (int i = length / 2 - 1; i >= 0; i--) {
+            siftDown(arr, low, i, length);
+        }
+        for (int j = length - 1; j > 0; j--) {
+            int temp = arr[low];
+            arr[low] = arr[low + j];
+            arr[low + j] = temp;
+            siftDown(arr, low, 0, j);
+        }
+    }
+
+    // 与SortAllInOne.adjustHeap相同，只是堆从offset开始
+    private static void siftDown(int[] arr, int offset, int i, int length) {
+        int temp = arr[offset + i];
+        for (int k = i * 2 + 1; k < length; k = k * 2 + 1) {
+            if (k + 1 < length && arr[offset + k] < arr[offset + k + 1]) {
+                k = k + 1;
+            }
+
+            if (arr[offset + k] > temp) {
+                arr[offset + i] = arr[offset + k];
+                i = k;
+            } else {
+                break;
+            }
+        }
+        arr[offset + i] = temp;
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.jr.test.algorithms.sorts;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 基于ForkJoinPool的并行归并排序。
+ * <p>
+ * 每次调用只分配一个与原数组等长的辅助数组，递归的每一层在原数组与辅助数组之间交替归并(ping-pong)，
+ * 不需要每层都拷贝回原数组；区间长度不超过grain时在当前线程内顺序排序，小区间使用插入排序；
+ * 超过grain的两个有序区间使用并行归并：取较长区间的中点，在另一区间中二分查找切分点，两半分别归并。
+ */
+public class ParallelMergeSort {
+
+    public static final int DEFAULT_GRAIN = 1 << 13;
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    public static void sort(int[] arr) {
+        sort(arr, DEFAULT_GRAIN);
+    }
+
+    public static void sort(int[] arr, int grain) {
+        sort(arr, grain, ForkJoinPool.commonPool());
+    }
+
+    public static void sort(int[] arr, int grain, ForkJoinPool pool) {
+        if (grain < 1) throw new IllegalArgumentException("grain: " + grain);
+
+        int length = arr.length;
+        if (length < 2) return;
+
+        int[] tmp = new int[length];
+        grain = Math.max(grain, INSERTION_SORT_THRESHOLD);
+        if (length <= grain || pool.getParallelism() == 1) {
+            mergeSort(arr, tmp, 0, length);
+        } else {
+            pool.invoke(new SortTask(arr, tmp, 0, length, false, grain));
+        }
+    }
+
+    /**
+     * 对arr[low, high)排序，排序结果：toTmp为false时在arr中，为true时在tmp中
+     */
+    private static class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] arr, tmp;
+        private final int low, high, grain;
+        private final boolean toTmp;
+
+        SortTask(int[] arr, int[] tmp, int low, int high, boolean toTmp, int grain) {
+            this.arr = arr;
+            this.tmp = tmp;
+            this.low = low;
+            this.high = high;
+            this.toTmp = toTmp;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low <= grain) {
+                mergeSort(arr, tmp, low, high);
+                if (toTmp) System.arraycopy(arr, low, tmp, low, high - low);
+                return;
+            }
+
+            // 子任务把结果写到另一个数组，本层再归并回目标数组
+            int mid = (low + high) >>> 1;
+            invokeAll(new SortTask(arr, tmp, low, mid, !toTmp, grain),
+                    new SortTask(arr, tmp, mid, high, !toTmp, grain));
+
+            int[] src = toTmp ? arr : tmp;
+            int[] dst = toTmp ? tmp : arr;
+            new MergeTask(src, low, mid, mid, high, dst, low, grain).compute();
+        }
+    }
+
+    /**
+     * 将src[low1, high1)与src[low2, high2)两个有序区间归并到dst[dstLow, ...)
+     */
+    private static class MergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src, dst;
+        private final int low1, high1, low2, high2, dstLow, grain;
+
+        MergeTask(int[] src, int low1, int high1, int low2, int high2, int[] dst, int dstLow, int grain) {
+            this.src = src;
+            this.low1 = low1;
+            this.high1 = high1;
+            this.low2 = low2;
+            this.high2 = high2;
+            this.dst = dst;
+            this.dstLow = dstLow;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            int len1 = high1 - low1, len2 = high2 - low2;
+            if (len1 + len2 <= grain) {
+                merge(src, low1, high1, low2, high2, dst, dstLow);
+                return;
+            }
+
+            // 左半部分：[low1, mid1) + [low2, mid2)，右半部分：[mid1, high1) + [mid2, high2)
+            int mid1, mid2;
+            if (len1 >= len2) {
+                mid1 = (low1 + high1) >>> 1;
+                mid2 = lowerBound(src, low2, high2, src[mid1]);
+            } else {
+                mid2 = (low2 + high2) >>> 1;
+                mid1 = upperBound(src, low1, high1, src[mid2]);
+            }
+
+            int rightDstLow = dstLow + (mid1 - low1) + (mid2 - low2);
+            invokeAll(new MergeTask(src, low1, mid1, low2, mid2, dst, dstLow, grain),
+                    new MergeTask(src, mid1, high1, mid2, high2, dst, rightDstLow, grain));
+        }
+    }
+
+    // 第一个不小于key的下标
+    private static int lowerBound(int[] arr, int low, int high, int key) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // 第一个大于key的下标
+    private static int upperBound(int[] arr, int low, int high, int key) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arr[mid] <= key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    //========================================
+    // 顺序归并排序，对arr[low, high)排序，tmp为辅助数组
+
+    private static void mergeSort(int[] arr, int[] tmp, int low, int high) {
+        if (high - low <= INSERTION_SORT_THRESHOLD) {
+            IntroSort.insertionSort(arr, low, high - 1);
+            return;
+        }
+
+        int mid = (low + high) >>> 1;
+        mergeSort(arr, tmp, low, mid);
+        mergeSort(arr, tmp, mid, high);
+
+        // 两部分已经整体有序
+        if (arr[mid - 1] <= arr[mid]) return;
+
+        System.arraycopy(arr, low, tmp, low, high - low);
+        merge(tmp, low, mid, mid, high, arr, low);
+    }
+
+    private static void merge(int[] src, int low1, int high1, int low2, int high2, int[] dst, int k) {
+        int i = low1, j = low2;
+        while (i < high1 && j < high2) {
+            if (src[i] <= src[j]) {
+                dst[k++] = src[i++];
+            } else {
+                dst[k++] = src[j++];
+            }
+        }
+
+        while (i < high1) {
+            dst[k++] = src[i++];
+        }
+
+        while (j < high2) {
+            dst[k++] = src[j++];
+        }
+    }
+
+}
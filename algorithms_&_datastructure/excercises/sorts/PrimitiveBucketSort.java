@@ -0,0 +1,110 @@
+package com.jr.test.algorithms.sorts;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 不装箱的桶排序，替代SortAllInOne.bucketSort中的ArrayList桶。
+ * <p>
+ * 所有桶保存在两个平铺的int数组中：offsets[b]到offsets[b + 1]是第b个桶在data中的区间。
+ * 先统计每个桶的元素个数，再计算偏移并分配元素，最后对每个桶原地排序(IntroSort)并拷贝回原数组。
+ * 桶的个数由元素个数和取值范围决定，取桶号用移位而不是除法；元素较多时各个桶在ForkJoinPool中并行排序。
+ * 除原数组外只分配offsets和data两个数组。
+ */
+public class PrimitiveBucketSort {
+
+    // 期望的平均桶大小
+    private static final int AVG_BUCKET_SIZE = 8;
+
+    // 元素个数超过该值时并行排序各个桶
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    // 并行排序时每个任务至少处理的元素个数
+    private static final int PARALLEL_GRAIN = 1 << 13;
+
+    public static void sort(int[] arr) {
+        sort(arr, ForkJoinPool.commonPool());
+    }
+
+    public static void sort(int[] arr, ForkJoinPool pool) {
+        int length = arr.length;
+        if (length < 2) return;
+
+        int max = arr[0], min = arr[0];
+        for (int i = 1; i < length; i++) {
+            int v = arr[i];
+            if (v > max) max = v;
+            else if (v < min) min = v;
+        }
+        if (max == min) return;
+
+        // 取值范围可能超过int，用long计算；桶号 = (v - min) >>> shift
+        long range = (long) max - min;
+        int desired = Math.max(1, length / AVG_BUCKET_SIZE);
+        int shift = 0;
+        while ((range >>> shift) >= desired) shift++;
+        int bucketNum = (int) (range >>> shift) + 1;
+
+        int[] offsets = new int[bucketNum + 1];
+        for (int i = 0; i < length; i++) {
+            offsets[(int) (((long) arr[i] - min) >>> shift) + 1]++;
+        }
+        for (int b = 0; b < bucketNum; b++) {
+            offsets[b + 1] += offsets[b];
+        }
+
+        // 分配时offsets[b]用作第b个桶的写指针，分配结束后offsets[b]等于原来的offsets[b + 1]
+        int[] data = new int[length];
+        for (int i = 0; i < length; i++) {
+            int v = arr[i];
+            data[offsets[(int) (((long) v - min) >>> shift)]++] = v;
+        }
+        System.arraycopy(offsets, 0, offsets, 1, bucketNum);
+        offsets[0] = 0;
+
+        if (length >= PARALLEL_THRESHOLD && pool.getParallelism() > 1) {
+            pool.invoke(new BucketTask(data, offsets, 0, bucketNum));
+        } else {
+            sortBuckets(data, offsets, 0, bucketNum);
+        }
+
+        System.arraycopy(data, 0, arr, 0, length);
+    }
+
+    private static void sortBuckets(int[] data, int[] offsets, int from, int to) {
+        for (int b = from; b < to; b++) {
+            if (offsets[b + 1] - offsets[b] > 1)
+                IntroSort.sort(data, offsets[b], offsets[b + 1] - 1);
+        }
+    }
+
+    /**
+     * 排序第[from, to)个桶，元素个数超过PARALLEL_GRAIN时按桶号二分
+     */
+    private static class BucketTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] data, offsets;
+        private final int from, to;
+
+        BucketTask(int[] data, int[] offsets, int from, int to) {
+            this.data = data;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 2 || offsets[to] - offsets[from] <= PARALLEL_GRAIN) {
+                sortBuckets(data, offsets, from, to);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new BucketTask(data, offsets, from, mid), new BucketTask(data, offsets, mid, to));
+        }
+    }
+
+}
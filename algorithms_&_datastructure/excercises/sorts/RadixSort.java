@@ -0,0 +1,254 @@
+package com.jr.test.algorithms.sorts;
+
+import java.util.Arrays;
+
+/**
+ * 基数排序，按字节(8 bit)分配，int需要4趟，long需要8趟。
+ * <p>
+ * 有符号数的处理：最高字节与0x80异或(翻转符号位)，使负数排在正数之前。
+ * <p>
+ * LSD：从低字节到高字节稳定地分配，一次遍历统计所有字节的计数，所有元素落在同一个桶中的趟直接跳过；
+ * 原数组与一个辅助数组交替使用，辅助数组可以由调用方传入以便重复使用。
+ * <p>
+ * MSD：从高字节开始原地分配(American flag sort)，再对每个桶递归处理下一个字节，
+ * 桶内元素少于MSD_INSERTION_SORT_THRESHOLD时改用插入排序。不需要辅助数组。
+ */
+public class RadixSort {
+
+    private static final int RADIX = 256;
+
+    private static final int MASK = RADIX - 1;
+
+    static final int MSD_INSERTION_SORT_THRESHOLD = 64;
+
+    //========================================
+    // LSD
+
+    public static void lsdSort(int[] arr) {
+        lsdSort(arr, new int[arr.length]);
+    }
+
+    /**
+     * @param buf 辅助数组，长度不小于arr.length
+     */
+    public static void lsdSort(int[] arr, int[] buf) {
+        int length = arr.length;
+        if (length < 2) return;
+        if (buf.length < length) throw new IllegalArgumentException("buf is shorter than arr");
+
+        int[][] count = new int[4][RADIX];
+        for (int i = 0; i < length; i++) {
+            int v = arr[i];
+            count[0][v & MASK]++;
+            count[1][(v >>> 8) & MASK]++;
+            count[2][(v >>> 16) & MASK]++;
+            count[3][(v >>> 24) ^ 0x80]++;
+        }
+
+        int[] src = arr, dst = buf;
+        for (int pass = 0; pass < 4; pass++) {
+            int shift = pass << 3;
+            int flip = pass == 3 ? 0x80 : 0;
+            int[] c = count[pass];
+
+            // 所有元素该字节相同，本趟不改变顺序
+            if (c[((src[0] >>> shift) & MASK) ^ flip] == length) continue;
+
+            toOffsets(c);
+            for (int i = 0; i < length; i++) {
+                int v = src[i];
+                dst[c[((v >>> shift) & MASK) ^ flip]++] = v;
+            }
+
+            int[] t = src;
+            src = dst;
+            dst = t;
+        }
+
+        if (src != arr) System.arraycopy(src, 0, arr, 0, length);
+    }
+
+    public static void lsdSort(long[] arr) {
+        lsdSort(arr, new long[arr.length]);
+    }
+
+    /**
+     * @param buf 辅助数组，长度不小于arr.length
+     */
+    public static void lsdSort(long[] arr, long[] buf) {
+        lsdSort(arr, buf, 0);
+    }
+
+    /**
+     * 只按第firstPass到第7个字节排序，低位字节保持原有的相对顺序
+     */
+    static void lsdSort(long[] arr, long[] buf, int firstPass) {
+        int length = arr.length;
+        if (length < 2) return;
+        if (buf.length < length) throw new IllegalArgumentException("buf is shorter than arr");
+
+        int[][] count = new int[8][RADIX];
+        for (int i = 0; i < length; i++) {
+            long v = arr[i];
+            for (int pass = firstPass; pass < 7; pass++) {
+                count[pass][(int) (v >>> (pass << 3)) & MASK]++;
+            }
+            count[7][(int) (v >>> 56) ^ 0x80]++;
+        }
+
+        long[] src = arr, dst = buf;
+        for (int pass = firstPass; pass < 8; pass++) {
+            int shift = pass << 3;
+            int flip = pass == 7 ? 0x80 : 0;
+            int[] c = count[pass];
+
+            if (c[((int) (src[0] >>> shift) & MASK) ^ flip] == length) continue;
+
+            toOffsets(c);
+            for (int i = 0; i < length; i++) {
+                long v = src[i];
+                dst[c[((int) (v >>> shift) & MASK) ^ flip]++] = v;
+            }
+
+            long[] t = src;
+            src = dst;
+            dst = t;
+        }
+
+        if (src != arr) System.arraycopy(src, 0, arr, 0, length);
+    }
+
+    // 将计数转换为每个桶的起始下标
+    private static void toOffsets(int[] count) {
+        int sum = 0;
+        for (int i = 0; i < RADIX; i++) {
+            int c = count[i];
+            count[i] = sum;
+            sum += c;
+        }
+    }
+
+    //========================================
+    // MSD
+
+    public static void msdSort(int[] arr) {
+        if (arr.length < 2) return;
+        msdSort(arr, 0, arr.length, 24, new int[4][RADIX], new int[4][RADIX]);
+    }
+
+    /**
+     * 对arr[low, high)按第shift位开始的字节分配，end[level]和next[level]为每一层复用的桶边界
+     */
+    private static void msdSort(int[] arr, int low, int high, int shift, int[][] end, int[][] next) {
+        if (high - low < MSD_INSERTION_SORT_THRESHOLD) {
+            IntroSort.insertionSort(arr, low, high - 1);
+            return;
+        }
+
+        int level = 3 - (shift >>> 3);
+        int flip = shift == 24 ? 0x80 : 0;
+        int[] e = end[level], n = next[level];
+
+        Arrays.fill(e, 0);
+        for (int i = low; i < high; i++) {
+            e[((arr[i] >>> shift) & MASK) ^ flip]++;
+        }
+
+        int sum = low;
+        for (int b = 0; b < RADIX; b++) {
+            n[b] = sum;
+            sum += e[b];
+            e[b] = sum;
+        }
+
+        // 原地循环置换：把每个元素换到所属桶的下一个空位
+        for (int b = 0; b < RADIX; b++) {
+            while (n[b] < e[b]) {
+                int v = arr[n[b]];
+                int d = ((v >>> shift) & MASK) ^ flip;
+                while (d != b) {
+                    int t = arr[n[d]];
+                    arr[n[d]++] = v;
+                    v = t;
+                    d = ((v >>> shift) & MASK) ^ flip;
+                }
+                arr[n[b]++] = v;
+            }
+        }
+
+        if (shift == 0) return;
+
+        int start = low;
+        for (int b = 0; b < RADIX; b++) {
+            int stop = e[b];
+            if (stop - start > 1) msdSort(arr, start, stop, shift - 8, end, next);
+            start = stop;
+        }
+    }
+
+    public static void msdSort(long[] arr) {
+        if (arr.length < 2) return;
+        msdSort(arr, 0, arr.length, 56, new int[8][RADIX], new int[8][RADIX]);
+    }
+
+    private static void msdSort(long[] arr, int low, int high, int shift, int[][] end, int[][] next) {
+        if (high - low < MSD_INSERTION_SORT_THRESHOLD) {
+            insertionSort(arr, low, high - 1);
+            return;
+        }
+
+        int level = 7 - (shift >>> 3);
+        int flip = shift == 56 ? 0x80 : 0;
+        int[] e = end[level], n = next[level];
+
+        Arrays.fill(e, 0);
+        for (int i = low; i < high; i++) {
+            e[((int) (arr[i] >>> shift) & MASK) ^ flip]++;
+        }
+
+        int sum = low;
+        for (int b = 0; b < RADIX; b++) {
+            n[b] = sum;
+            sum += e[b];
+            e[b] = sum;
+        }
+
+        for (int b = 0; b < RADIX; b++) {
+            while (n[b] < e[b]) {
+                long v = arr[n[b]];
+                int d = ((int) (v >>> shift) & MASK) ^ flip;
+                while (d != b) {
+                    long t = arr[n[d]];
+                    arr[n[d]++] = v;
+                    v = t;
+                    d = ((int) (v >>> shift) & MASK) ^ flip;
+                }
+                arr[n[b]++] = v;
+            }
+        }
+
+        if (shift == 0) return;
+
+        int start = low;
+        for (int b = 0; b < RADIX; b++) {
+            int stop = e[b];
+            if (stop - start > 1) msdSort(arr, start, stop, shift - 8, end, next);
+            start = stop;
+        }
+    }
+
+    static void insertionSort(long[] arr, int low, int high) {
+        long curr;
+        int preInx;
+        for (int i = low + 1; i <= high; i++) {
+            curr = arr[i];
+            preInx = i - 1;
+            while (preInx >= low && curr < arr[preInx]) {
+                arr[preInx + 1] = arr[preInx--];
+            }
+
+            arr[preInx + 1] = curr;
+        }
+    }
+
+}
@@ -0,0 +1,333 @@
+package com.jr.test.algorithms.sorts;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 稳定的自然归并排序(TimSort的简化版本)，用于对象数组。
+ * <p>
+ * 1. 从左到右找出天然有序的段(run)，严格降序的段原地反转；
+ * 2. 长度不足minRun的段用二分插入排序补齐到minRun；
+ * 3. 段压入栈中，栈顶的段长度满足TimSort的不变式，否则合并相邻的段，保证总合并代价为o(nlgn)；
+ * 4. 合并前用二分查找跳过两段首尾已经就位的元素，再把较短的一段拷贝到辅助数组中合并。
+ * <p>
+ * 与TimSort相比省略了galloping模式，已经有序或由少数有序段组成的输入仍然是o(n)的。
+ * <p>
+ * int[]版本不需要稳定性，找出所有有序段后自底向上两两归并，原数组与一个辅助数组交替使用，时间复杂度为o(nlg(段数))。
+ */
+public class RunMergeSort {
+
+    // 小于该长度时只做二分插入排序
+    private static final int MIN_MERGE = 32;
+
+    public static <T> void sort(T[] arr, Comparator<? super T> c) {
+        sort(arr, 0, arr.length, c);
+    }
+
+    /**
+     * 对arr[low, high)排序
+     */
+    public static <T> void sort(T[] arr, int low, int high, Comparator<? super T> c) {
+        int remaining = high - low;
+        if (remaining < 2) return;
+
+        if (remaining < MIN_MERGE) {
+            int runLen = countRunAndMakeAscending(arr, low, high, c);
+            binaryInsertionSort(arr, low, high, low + runLen, c);
+            return;
+        }
+
+        new Merger<>(arr, c, remaining).sort(low, high);
+    }
+
+    public static void sort(int[] arr) {
+        int length = arr.length;
+        if (length < 2) return;
+
+        // runs[i]为第i个有序段的起点，runs[runCount] = length
+        int[] runs = new int[16];
+        int runCount = 0;
+        for (int low = 0; low < length; ) {
+            if (runCount + 1 >= runs.length) runs = Arrays.copyOf(runs, runs.length << 1);
+            runs[runCount++] = low;
+            low += countRunAndMakeAscending(arr, low, length);
+        }
+        runs[runCount] = length;
+        if (runCount == 1) return;
+
+        int[] src = arr, dst = new int[length];
+        while (runCount > 1) {
+            int merged = 0;
+            for (int i = 0; i < runCount; i += 2) {
+                int low = runs[i], high = runs[Math.min(i + 2, runCount)];
+                if (i + 1 < runCount)
+                    merge(src, low, runs[i + 1], high, dst);
+                else
+                    System.arraycopy(src, low, dst, low, high - low);
+                runs[merged++] = low;
+            }
+            runs[merged] = length;
+            runCount = merged;
+
+            int[] t = src;
+            src = dst;
+            dst = t;
+        }
+
+        if (src != arr) System.arraycopy(src, 0, arr, 0, length);
+    }
+
+    private static int countRunAndMakeAscending(int[] arr, int low, int high) {
+        int runHigh = low + 1;
+        if (runHigh == high) return 1;
+
+        if (arr[runHigh++] < arr[low]) {
+            while (runHigh < high && arr[runHigh] < arr[runHigh - 1])
+                runHigh++;
+            for (int i = low, j = runHigh - 1; i < j; i++, j--) {
+                int t = arr[i];
+                arr[i] = arr[j];
+                arr[j] = t;
+            }
+        } else {
+            while (runHigh < high && arr[runHigh] >= arr[runHigh - 1])
+                runHigh++;
+        }
+
+        return runHigh - low;
+    }
+
+    // 将src[low, mid)与src[mid, high)归并到dst[low, high)
+    private static void merge(int[] src, int low, int mid, int high, int[] dst) {
+        int i = low, j = mid, k = low;
+        while (i < mid && j < high) {
+            if (src[i] <= src[j]) {
+                dst[k++] = src[i++];
+            } else {
+                dst[k++] = src[j++];
+            }
+        }
+
+        while (i < mid) {
+            dst[k++] = src[i++];
+        }
+
+        while (j < high) {
+            dst[k++] = src[j++];
+        }
+    }
+
+    /**
+     * 保存段栈和辅助数组，每次排序创建一个
+     */
+    private static class Merger<T> {
+
+        private final T[] arr;
+        private final Comparator<? super T> c;
+
+        private Object[] tmp;
+
+        // 段栈：第i个段为arr[runBase[i], runBase[i] + runLen[i])
+        private final int[] runBase = new int[49];
+        private final int[] runLen = new int[49];
+        private int stackSize = 0;
+
+        Merger(T[] arr, Comparator<? super T> c, int length) {
+            this.arr = arr;
+            this.c = c;
+            this.tmp = new Object[Math.min(length >>> 1, 256)];
+        }
+
+        void sort(int low, int high) {
+            int remaining = high - low;
+            int minRun = minRunLength(remaining);
+            do {
+                int runLen = countRunAndMakeAscending(arr, low, high, c);
+
+                if (runLen < minRun) {
+                    int force = Math.min(remaining, minRun);
+                    binaryInsertionSort(arr, low, low + force, low + runLen, c);
+                    runLen = force;
+                }
+
+                runBase[stackSize] = low;
+                this.runLen[stackSize] = runLen;
+                stackSize++;
+                mergeCollapse();
+
+                low += runLen;
+                remaining -= runLen;
+            } while (remaining != 0);
+
+            mergeForceCollapse();
+        }
+
+        private void mergeCollapse() {
+            while (stackSize > 1) {
+                int n = stackSize - 2;
+                if (n > 0 && runLen[n - 1] <= runLen[n] + runLen[n + 1]
+                        || n > 1 && runLen[n - 2] <= runLen[n] + runLen[n - 1]) {
+                    if (runLen[n - 1] < runLen[n + 1]) n--;
+                } else if (runLen[n] > runLen[n + 1]) {
+                    break;
+                }
+                mergeAt(n);
+            }
+        }
+
+        private void mergeForceCollapse() {
+            while (stackSize > 1) {
+                int n = stackSize - 2;
+                if (n > 0 && runLen[n - 1] < runLen[n + 1]) n--;
+                mergeAt(n);
+            }
+        }
+
+        // 合并栈中第i和i + 1个段
+        private void mergeAt(int i) {
+            int base1 = runBase[i], len1 = runLen[i];
+            int base2 = runBase[i + 1], len2 = runLen[i + 1];
+
+            runLen[i] = len1 + len2;
+            if (i == stackSize - 3) {
+                runBase[i + 1] = runBase[i + 2];
+                runLen[i + 1] = runLen[i + 2];
+            }
+            stackSize--;
+
+            // 第一段中不大于arr[base2]的前缀已经就位
+            int k = upperBound(arr, base1, base1 + len1, arr[base2], c) - base1;
+            base1 += k;
+            len1 -= k;
+            if (len1 == 0) return;
+
+            // 第二段中不小于第一段末尾元素的后缀已经就位
+            len2 = lowerBound(arr, base2, base2 + len2, arr[base1 + len1 - 1], c) - base2;
+            if (len2 == 0) return;
+
+            if (len1 <= len2)
+                mergeLo(base1, len1, base2, len2);
+            else
+                mergeHi(base1, len1, base2, len2);
+        }
+
+        // 第一段较短：拷贝第一段，从前向后合并
+        @SuppressWarnings("unchecked")
+        private void mergeLo(int base1, int len1, int base2, int len2) {
+            Object[] t = ensureCapacity(len1);
+            System.arraycopy(arr, base1, t, 0, len1);
+
+            int i = 0, j = base2, k = base1;
+            int end2 = base2 + len2;
+            while (i < len1 && j < end2) {
+                if (c.compare(arr[j], (T) t[i]) < 0)
+                    arr[k++] = arr[j++];
+                else
+                    arr[k++] = (T) t[i++];
+            }
+            while (i < len1) {
+                arr[k++] = (T) t[i++];
+            }
+        }
+
+        // 第二段较短：拷贝第二段，从后向前合并
+        @SuppressWarnings("unchecked")
+        private void mergeHi(int base1, int len1, int base2, int len2) {
+            Object[] t = ensureCapacity(len2);
+            System.arraycopy(arr, base2, t, 0, len2);
+
+            int i = base1 + len1 - 1, j = len2 - 1, k = base2 + len2 - 1;
+            while (i >= base1 && j >= 0) {
+                if (c.compare((T) t[j], arr[i]) < 0)
+                    arr[k--] = arr[i--];
+                else
+                    arr[k--] = (T) t[j--];
+            }
+            while (j >= 0) {
+                arr[k--] = (T) t[j--];
+            }
+        }
+
+        private Object[] ensureCapacity(int minCapacity) {
+            if (tmp.length < minCapacity) {
+                int newSize = Math.max(minCapacity, Math.min(tmp.length << 1, arr.length >>> 1));
+                tmp = new Object[newSize];
+            }
+            return tmp;
+        }
+    }
+
+    //========================================
+
+    /**
+     * 返回从low开始的有序段长度，严格降序的段会被反转
+     */
+    static <T> int countRunAndMakeAscending(T[] arr, int low, int high, Comparator<? super T> c) {
+        int runHigh = low + 1;
+        if (runHigh == high) return 1;
+
+        if (c.compare(arr[runHigh++], arr[low]) < 0) {
+            while (runHigh < high && c.compare(arr[runHigh], arr[runHigh - 1]) < 0)
+                runHigh++;
+            reverseRange(arr, low, runHigh);
+        } else {
+            while (runHigh < high && c.compare(arr[runHigh], arr[runHigh - 1]) >= 0)
+                runHigh++;
+        }
+
+        return runHigh - low;
+    }
+
+    private static void reverseRange(Object[] arr, int low, int high) {
+        high--;
+        while (low < high) {
+            Object t = arr[low];
+            arr[low++] = arr[high];
+            arr[high--] = t;
+        }
+    }
+
+    /**
+     * arr[low, start)已经有序，把arr[start, high)逐个二分插入
+     */
+    static <T> void binaryInsertionSort(T[] arr, int low, int high, int start, Comparator<? super T> c) {
+        if (start == low) start++;
+        for (; start < high; start++) {
+            T pivot = arr[start];
+            // 插入到所有相等元素之后，保持稳定
+            int pos = upperBound(arr, low, start, pivot, c);
+            System.arraycopy(arr, pos, arr, pos + 1, start - pos);
+            arr[pos] = pivot;
+        }
+    }
+
+    static int minRunLength(int n) {
+        int r = 0;
+        while (n >= MIN_MERGE) {
+            r |= (n & 1);
+            n >>= 1;
+        }
+        return n + r;
+    }
+
+    // 第一个大于key的下标
+    private static <T> int upperBound(T[] arr, int low, int high, T key, Comparator<? super T> c) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (c.compare(key, arr[mid]) < 0) high = mid;
+            else low = mid + 1;
+        }
+        return low;
+    }
+
+    // 第一个不小于key的下标
+    private static <T> int lowerBound(T[] arr, int low, int high, T key, Comparator<? super T> c) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (c.compare(arr[mid], key) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.jr.test.algorithms.sorts;
+
+import java.util.Arrays;
+
+/**
+ * 使用经过调优的步长序列的希尔排序，不分配任何内存，适合对小的、基本有序的缓冲区排序。
+ * <p>
+ * SortAllInOne.shellSort使用的n/2, n/4, ...序列在步长为偶数时反复比较相同的子序列，是最慢的选择。
+ * 这里的步长序列在类加载时一次性计算好，并按长度的数量级(2^k)预先确定起始步长；
+ * 排序前先检查是否已经有序，有序时直接返回。
+ */
+public class ShellSort {
+
+    public enum GapSequence {
+
+        /**
+         * Ciura(2001)实验得出的序列，之后按2.25倍扩展
+         */
+        CIURA {
+            @Override
+            long next(long prev, int k) {
+                final long[] ciura = {1, 4, 10, 23, 57, 132, 301, 701, 1750};
+                return k < ciura.length ? ciura[k] : (long) Math.ceil(prev * 2.25);
+            }
+        },
+
+        /**
+         * Tokuda(1992)：ceil((9 * (9/4)^k - 4) / 5)
+         */
+        TOKUDA {
+            @Override
+            long next(long prev, int k) {
+                return (long) Math.ceil((9 * Math.pow(2.25, k) - 4) / 5);
+            }
+        },
+
+        /**
+         * Sedgewick(1986)：1, 4^k + 3 * 2^(k - 1) + 1
+         */
+        SEDGEWICK {
+            @Override
+            long next(long prev, int k) {
+                return k == 0 ? 1 : (1L << (2 * k)) + 3 * (1L << (k - 1)) + 1;
+            }
+        };
+
+        // 升序的步长
+        private final int[] gaps;
+
+        // startIndex[k]：长度在[2^k, 2^(k + 1))之间时第一个使用的步长在gaps中的下标
+        private final int[] startIndex = new int[32];
+
+        GapSequence() {
+            int[] tmp = new int[64];
+            int size = 0;
+            long gap = 0;
+            for (int k = 0; ; k++) {
+                gap = next(gap, k);
+                if (gap > Integer.MAX_VALUE) break;
+                if (size == 0 || gap > tmp[size - 1]) tmp[size++] = (int) gap;
+            }
+            gaps = Arrays.copyOf(tmp, size);
+
+            for (int k = 0; k < 32; k++) {
+                long length = 1L << k;
+                int i = 0;
+                while (i + 1 < size && gaps[i + 1] < length) i++;
+                startIndex[k] = i;
+            }
+        }
+
+        abstract long next(long prev, int k);
+
+        int start(int length) {
+            return startIndex[31 - Integer.numberOfLeadingZeros(length)];
+        }
+
+        int gap(int index) {
+            return gaps[index];
+        }
+    }
+
+    public static void sort(int[] arr) {
+        sort(arr, GapSequence.CIURA);
+    }
+
+    public static void sort(int[] arr, GapSequence sequence) {
+        int length = arr.length;
+        if (length < 2 || isSorted(arr)) return;
+
+        for (int g = sequence.start(length); g >= 0; g--) {
+            int step = sequence.gap(g);
+            for (int i = step; i < length; i++) {
+                int j = i;
+                int tmp = arr[j];
+
+                while (j - step >= 0 && arr[j - step] > tmp) {
+                    arr[j] = arr[j - step];
+                    j -= step;
+                }
+                arr[j] = tmp;
+            }
+        }
+    }
+
+    public static void sort(long[] arr) {
+        sort(arr, GapSequence.CIURA);
+    }
+
+    public static void sort(long[] arr, GapSequence sequence) {
+        int length = arr.length;
+        if (length < 2 || isSorted(arr)) return;
+
+        for (int g = sequence.start(length); g >= 0; g--) {
+            int step = sequence.gap(g);
+            for (int i = step; i < length; i++) {
+                int j = i;
+                long tmp = arr[j];
+
+                while (j - step >= 0 && arr[j - step] > tmp) {
+                    arr[j] = arr[j - step];
+                    j -= step;
+                }
+                arr[j] = tmp;
+            }
+        }
+    }
+
+    private static boolean isSorted(int[] arr) {
+        for (int i = 1; i < arr.length; i++) {
+            if (arr[i] < arr[i - 1]) return false;
+        }
+        return true;
+    }
+
+    private static boolean isSorted(long[] arr) {
+        for (int i = 1; i < arr.length; i++) {
+            if (arr[i] < arr[i - 1]) return false;
+        }
+        return true;
+    }
+
+}
@@ -26,7 +26,7 @@ import java.util.Collections;
  * +------------+--------------------------+------------------------+-----------------------+------------------+----------+
  * | bucket
  * +------------+--------------------------+------------------------+-----------------------+------------------+----------+
- * | radix
+ * | radix      | o(d(n+k))                | o(d(n+k))              | o(d(n+k))             | o(n+k)           | stable   |
  * +============+==========================+========================+=======================+==================+==========+
  */
 public class SortAllInOne {
@@ -176,8 +176,8 @@ public class SortAllInOne {
     private static void doMergeSort(int[] arr, int left, int right, int[] tmp) {
         if (left < right) {
             int divid = (left + right) / 2;
-            doMergeSort(arr, divid, right, tmp);
             doMergeSort(arr, left, divid, tmp);
+            doMergeSort(arr, divid + 1, right, tmp);
             merge(arr, left, divid, right, tmp);
         }
     }
@@ -187,9 +187,9 @@ public class SortAllInOne {
         int i = left, j = divid + 1, t = 0;
         while (i <= divid && j <= right) {
             if (arr[i] <= arr[j]) {
-                tmp[t++] = tmp[i++];
+                tmp[t++] = arr[i++];
             } else {
-                tmp[t++] = tmp[j++];
+                tmp[t++] = arr[j++];
             }
         }
 
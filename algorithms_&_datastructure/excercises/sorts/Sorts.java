@@ -0,0 +1,162 @@
+package com.jr.test.algorithms.sorts;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * 排序的统一入口。
+ * <p>
+ * 基本类型的重载各自使用专门的实现，不装箱：
+ * int[]使用IntroSort；long[]使用RadixSort；double[]先映射为保序的long再基数排序；
+ * short[]和char[]使用两趟按字节的基数排序。
+ * 对象数组和List使用稳定的RunMergeSort，comparator为null时按自然顺序排序。
+ */
+public class Sorts {
+
+    // 小于该长度时直接插入排序
+    private static final int INSERTION_SORT_THRESHOLD = 48;
+
+    public static void sort(int[] arr) {
+        IntroSort.sort(arr);
+    }
+
+    public static void sort(long[] arr) {
+        if (arr.length <= INSERTION_SORT_THRESHOLD)
+            RadixSort.insertionSort(arr, 0, arr.length - 1);
+        else
+            RadixSort.lsdSort(arr);
+    }
+
+    /**
+     * 顺序与Double.compare一致：-0.0在0.0之前，NaN排在最后
+     */
+    public static void sort(double[] arr) {
+        int length = arr.length;
+        if (length < 2) return;
+
+        long[] keys = new long[length];
+        for (int i = 0; i < length; i++) {
+            keys[i] = toSortableBits(Double.doubleToLongBits(arr[i]));
+        }
+
+        sort(keys);
+
+        for (int i = 0; i < length; i++) {
+            arr[i] = Double.longBitsToDouble(toSortableBits(keys[i]));
+        }
+    }
+
+    // 负数的除符号位外取反，使有符号long的顺序与double的顺序一致；该变换是自身的逆变换
+    private static long toSortableBits(long bits) {
+        return bits >= 0 ? bits : bits ^ Long.MAX_VALUE;
+    }
+
+    public static void sort(short[] arr) {
+        int length = arr.length;
+        if (length <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(arr);
+            return;
+        }
+
+        // 两趟LSD，高字节翻转符号位
+        int[] low = new int[257], high = new int[257];
+        for (short v : arr) {
+            low[(v & 0xFF) + 1]++;
+            high[((v >>> 8) & 0xFF ^ 0x80) + 1]++;
+        }
+        for (int i = 0; i < 256; i++) {
+            low[i + 1] += low[i];
+            high[i + 1] += high[i];
+        }
+
+        short[] buf = new short[length];
+        for (short v : arr) {
+            buf[low[v & 0xFF]++] = v;
+        }
+        for (short v : buf) {
+            arr[high[(v >>> 8) & 0xFF ^ 0x80]++] = v;
+        }
+    }
+
+    public static void sort(char[] arr) {
+        int length = arr.length;
+        if (length <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(arr);
+            return;
+        }
+
+        int[] low = new int[257], high = new int[257];
+        for (char v : arr) {
+            low[(v & 0xFF) + 1]++;
+            high[(v >>> 8) + 1]++;
+        }
+        for (int i = 0; i < 256; i++) {
+            low[i + 1] += low[i];
+            high[i + 1] += high[i];
+        }
+
+        char[] buf = new char[length];
+        for (char v : arr) {
+            buf[low[v & 0xFF]++] = v;
+        }
+        for (char v : buf) {
+            arr[high[v >>> 8]++] = v;
+        }
+    }
+
+    public static <T> void sort(T[] arr, Comparator<? super T> c) {
+        RunMergeSort.sort(arr, 0, arr.length, nullToNatural(c));
+    }
+
+    public static <T> void sort(T[] arr, int low, int high, Comparator<? super T> c) {
+        if (low < 0 || high > arr.length || low > high)
+            throw new ArrayIndexOutOfBoundsException("low: " + low + ", high: " + high + ", length: " + arr.length);
+        RunMergeSort.sort(arr, low, high, nullToNatural(c));
+    }
+
+    /**
+     * 与List.sort的默认实现相同：拷贝到数组中排序，再按顺序写回
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> void sort(List<T> list, Comparator<? super T> c) {
+        Object[] arr = list.toArray();
+        RunMergeSort.sort((T[]) arr, 0, arr.length, nullToNatural(c));
+
+        ListIterator<T> it = list.listIterator();
+        for (Object o : arr) {
+            it.next();
+            it.set((T) o);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Comparator<? super T> nullToNatural(Comparator<? super T> c) {
+        return c != null ? c : (Comparator<? super T>) Comparator.naturalOrder();
+    }
+
+    //========================================
+
+    private static void insertionSort(short[] arr) {
+        for (int i = 1; i < arr.length; i++) {
+            short curr = arr[i];
+            int preInx = i - 1;
+            while (preInx >= 0 && curr < arr[preInx]) {
+                arr[preInx + 1] = arr[preInx--];
+            }
+            arr[preInx + 1] = curr;
+        }
+    }
+
+    private static void insertionSort(char[] arr) {
+        for (int i = 1; i < arr.length; i++) {
+            char curr = arr[i];
+            int preInx = i - 1;
+            while (preInx >= 0 && curr < arr[preInx]) {
+                arr[preInx + 1] = arr[preInx--];
+            }
+            arr[preInx + 1] = curr;
+        }
+    }
+
+}
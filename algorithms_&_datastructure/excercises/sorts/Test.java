@@ -15,13 +15,20 @@ public class Test {
         System.out.println("Before: " + Arrays.toString(test));
 //        SortAllInOne.bubbleSort(test);
 //        SortAllInOne.quickSort(test, 0, test.length - 1);
+//        IntroSort.sort(test);
 //        SortAllInOne.insertionSort(test);
 //        SortAllInOne.shellSort(test);
+//        ShellSort.sort(test, ShellSort.GapSequence.TOKUDA);
 //        SortAllInOne.selectionSort(test);
 //        SortAllInOne.heapSort(test);
 //        SortAllInOne.mergeSort(test);
+//        ParallelMergeSort.sort(test);
 //        SortAllInOne.countSort(test);
 //        SortAllInOne.bucketSort(test);
+//        PrimitiveBucketSort.sort(test);
+//        RadixSort.lsdSort(test);
+//        RadixSort.msdSort(test);
+//        System.out.println(AdaptiveSort.sort(test));
         System.out.println("After: " + Arrays.toString(test));
     }
 
@@ -1,22 +1,169 @@
 package com.jr.test.algorithms.trees;
 
-public class AVLTree<T extends Comparable<? super T>> {
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 
-    private AVLNode<T> insert(T value, AVLNode<T> root) {
-        if (null == root) return new AVLNode<>(value, null, null);
+/**
+ * 基于AVL树的有序Map，语义与TreeMap一致(不允许null键，除非comparator支持)。
+ * <p>
+ * 1. 节点带parent指针，插入、删除都是自底向上的迭代调整，子树高度不变时提前结束；
+ * 2. 迭代器、前驱/后继都沿parent指针移动，不使用递归也不需要额外的栈；
+ * 3. 高度保存在byte中(n个节点的AVL树高度不超过1.44 * lgn，int范围内的节点数不会超过45)；
+ * 4. subMap/headMap/tailMap/descendingMap都是原树上的视图，size()需要遍历区间。
+ */
+public class AVLTree<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
 
-        int i = value.compareTo(root.data);
+    private static final int LOWER = 0, FLOOR = 1, CEILING = 2, HIGHER = 3;
+
+    // 迭代器的边界节点不存在时使用的key，不会与任何key相同
+    private static final Object UNBOUNDED = new Object();
+
+    private final Comparator<? super K> comparator;
+
+    private AVLNode<K, V> root;
+    private int size;
+    private int modCount;
+
+    private transient EntrySet entrySet;
+    private transient KeySet<K> keySet;
+
+    public AVLTree() {
+        this.comparator = null;
+    }
+
+    public AVLTree(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    public AVLTree(Map<? extends K, ? extends V> map) {
+        this.comparator = null;
+        putAll(map);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 树的高度，空树为-1，只有根节点为0
+     */
+    public int height() {
+        return height(root);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return null != getEntry(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        AVLNode<K, V> node = getEntry(key);
+        return null == node ? null : node.value;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        size = 0;
+        root = null;
+    }
+
+    // =====================================================
+    @Override
+    public V put(K key, V value) {
+        AVLNode<K, V> node = root;
+        if (null == node) {
+            compare(key, key);
+            root = new AVLNode<>(key, value, null);
+            size = 1;
+            modCount++;
+            return null;
+        }
+
+        AVLNode<K, V> parent;
+        int i;
+        do {
+            parent = node;
+            i = compare(key, node.key);
+            if (i < 0)
+                node = node.left;
+            else if (i > 0)
+                node = node.right;
+            else
+                return node.setValue(value);
+        } while (null != node);
+
+        AVLNode<K, V> added = new AVLNode<>(key, value, parent);
         if (i < 0)
-            root.left = insert(value, root.left);
-        else if (i > 0)
-            root.right = insert(value, root.right);
+            parent.left = added;
+        else
+            parent.right = added;
+        size++;
+        modCount++;
+        rebalance(parent);
+        return null;
+    }
+    // =====================================================
+
+    // =====================================================
+    @Override
+    public V remove(Object key) {
+        AVLNode<K, V> node = getEntry(key);
+        if (null == node) return null;
 
-        return balance(root);
+        V old = node.value;
+        deleteNode(node);
+        return old;
     }
 
-    private AVLNode<T> balance(AVLNode<T> root) {
-        if (null == root) return null;
+    // 有两个子节点时把后继的内容移到node中，再删除后继(后继最多只有一个右子节点)
+    private void deleteNode(AVLNode<K, V> node) {
+        modCount++;
+        size--;
+
+        if (null != node.left && null != node.right) {
+            AVLNode<K, V> s = successor(node);
+            node.key = s.key;
+            node.value = s.value;
+            node = s;
+        }
 
+        AVLNode<K, V> parent = node.parent;
+        replaceChild(node, null != node.left ? node.left : node.right);
+        node.left = node.right = node.parent = null;
+        rebalance(parent);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 从node开始向上调整，子树高度与调整前相同时上层不受影响
+    private void rebalance(AVLNode<K, V> node) {
+        while (null != node) {
+            AVLNode<K, V> parent = node.parent;
+            int oldHeight = node.height;
+            if (balance(node).height == oldHeight) break;
+            node = parent;
+        }
+    }
+
+    private AVLNode<K, V> balance(AVLNode<K, V> root) {
         if (height(root.left) - height(root.right) > 1) {
             if (height(root.left.left) >= height(root.left.right))
                 root = rotateWithLeftChild(root);
@@ -27,51 +174,917 @@ public class AVLTree<T extends Comparable<? super T>> {
                 root = rotateWithRightChild(root);
             else
                 root = doubleWithRightChild(root);
+        } else {
+            updateHeight(root);
         }
-
-        root.height = Math.max(height(root.left), height(root.right)) + 1;
         return root;
     }
 
-    private AVLNode<T> doubleWithRightChild(AVLNode<T> root) {
-        return null;
+    private AVLNode<K, V> doubleWithRightChild(AVLNode<K, V> root) {
+        rotateWithLeftChild(root.right);
+        return rotateWithRightChild(root);
     }
 
-    private AVLNode<T> rotateWithRightChild(AVLNode<T> root) {
-        return null;
+    private AVLNode<K, V> rotateWithRightChild(AVLNode<K, V> root) {
+        AVLNode<K, V> right = root.right;
+        root.right = right.left;
+        if (null != right.left) right.left.parent = root;
+        replaceChild(root, right);
+        right.left = root;
+        root.parent = right;
+        updateHeight(root);
+        updateHeight(right);
+        return right;
     }
 
-    private AVLNode<T> doubleWithLeftChild(AVLNode<T> root) {
-        root.left = rotateWithRightChild(root.left);
+    private AVLNode<K, V> doubleWithLeftChild(AVLNode<K, V> root) {
+        rotateWithRightChild(root.left);
         return rotateWithLeftChild(root);
     }
 
-    private AVLNode<T> rotateWithLeftChild(AVLNode<T> root) {
-        AVLNode<T> left = root.left;
+    private AVLNode<K, V> rotateWithLeftChild(AVLNode<K, V> root) {
+        AVLNode<K, V> left = root.left;
         root.left = left.right;
+        if (null != left.right) left.right.parent = root;
+        replaceChild(root, left);
         left.right = root;
-        root.height = Math.max(height(root.left), height(root.right)) + 1;
-        left.height = Math.max(height(left.left), root.height) + 1;
+        root.parent = left;
+        updateHeight(root);
+        updateHeight(left);
         return left;
     }
 
-    private int height(AVLNode root) {
+    // 用node替换old在父节点中的位置
+    private void replaceChild(AVLNode<K, V> old, AVLNode<K, V> node) {
+        AVLNode<K, V> parent = old.parent;
+        if (null != node) node.parent = parent;
+
+        if (null == parent)
+            root = node;
+        else if (parent.left == old)
+            parent.left = node;
+        else
+            parent.right = node;
+    }
+
+    private static void updateHeight(AVLNode<?, ?> node) {
+        node.height = (byte) (Math.max(height(node.left), height(node.right)) + 1);
+    }
+
+    private static int height(AVLNode<?, ?> root) {
         return null == root ? -1 : root.height;
     }
+    // =====================================================
+
+    // =====================================================
+    // 查找
+    @SuppressWarnings("unchecked")
+    private int compare(Object k1, Object k2) {
+        return null == comparator
+                ? ((Comparable<? super K>) k1).compareTo((K) k2)
+                : comparator.compare((K) k1, (K) k2);
+    }
+
+    private AVLNode<K, V> getEntry(Object key) {
+        if (null == key && null == comparator) throw new NullPointerException();
+
+        AVLNode<K, V> node = root;
+        while (null != node) {
+            int i = compare(key, node.key);
+            if (i < 0)
+                node = node.left;
+            else if (i > 0)
+                node = node.right;
+            else
+                return node;
+        }
+        return null;
+    }
+
+    // 按relation(LOWER、FLOOR、CEILING、HIGHER)查找离key最近的节点
+    private AVLNode<K, V> getEntry(K key, int relation) {
+        AVLNode<K, V> node = root, found = null;
+        while (null != node) {
+            int i = compare(key, node.key);
+            if (i == 0 && (relation == FLOOR || relation == CEILING)) return node;
+
+            if (relation <= FLOOR) {
+                if (i > 0) {
+                    found = node;
+                    node = node.right;
+                } else {
+                    node = node.left;
+                }
+            } else {
+                if (i < 0) {
+                    found = node;
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+        return found;
+    }
+
+    private AVLNode<K, V> firstNode() {
+        AVLNode<K, V> node = root;
+        if (null != node) {
+            while (null != node.left) node = node.left;
+        }
+        return node;
+    }
+
+    private AVLNode<K, V> lastNode() {
+        AVLNode<K, V> node = root;
+        if (null != node) {
+            while (null != node.right) node = node.right;
+        }
+        return node;
+    }
+
+    private static <K, V> AVLNode<K, V> successor(AVLNode<K, V> node) {
+        if (null == node) return null;
+
+        if (null != node.right) {
+            AVLNode<K, V> p = node.right;
+            while (null != p.left) p = p.left;
+            return p;
+        }
+
+        AVLNode<K, V> p = node.parent, child = node;
+        while (null != p && child == p.right) {
+            child = p;
+            p = p.parent;
+        }
+        return p;
+    }
+
+    private static <K, V> AVLNode<K, V> predecessor(AVLNode<K, V> node) {
+        if (null == node) return null;
+
+        if (null != node.left) {
+            AVLNode<K, V> p = node.left;
+            while (null != p.right) p = p.right;
+            return p;
+        }
+
+        AVLNode<K, V> p = node.parent, child = node;
+        while (null != p && child == p.left) {
+            child = p;
+            p = p.parent;
+        }
+        return p;
+    }
+
+    private static <K, V> Entry<K, V> export(AVLNode<K, V> node) {
+        return null == node ? null : new SimpleImmutableEntry<>(node);
+    }
+
+    private static <K> K keyOrNull(AVLNode<K, ?> node) {
+        return null == node ? null : node.key;
+    }
+
+    private static <K> K key(AVLNode<K, ?> node) {
+        if (null == node) throw new NoSuchElementException();
+        return node.key;
+    }
+    // =====================================================
+
+    // =====================================================
+    // NavigableMap
+    @Override
+    public Entry<K, V> firstEntry() {
+        return export(firstNode());
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return export(lastNode());
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        AVLNode<K, V> node = firstNode();
+        Entry<K, V> entry = export(node);
+        if (null != node) deleteNode(node);
+        return entry;
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        AVLNode<K, V> node = lastNode();
+        Entry<K, V> entry = export(node);
+        if (null != node) deleteNode(node);
+        return entry;
+    }
+
+    @Override
+    public K firstKey() {
+        return key(firstNode());
+    }
+
+    @Override
+    public K lastKey() {
+        return key(lastNode());
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return export(getEntry(key, LOWER));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(getEntry(key, LOWER));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return export(getEntry(key, FLOOR));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(getEntry(key, FLOOR));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return export(getEntry(key, CEILING));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(getEntry(key, CEILING));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return export(getEntry(key, HIGHER));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(getEntry(key, HIGHER));
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        EntrySet es = entrySet;
+        return null != es ? es : (entrySet = new EntrySet());
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> ks = keySet;
+        return null != ks ? ks : (keySet = new KeySet<>(this));
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SubMap(true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new SubMap(true, null, true, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new SubMap(false, fromKey, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 沿parent指针移动的迭代器，遇到fence节点的key时结束(按key的引用比较，
+    // 因为删除有两个子节点的节点时，后继的key会被移到另一个节点中)
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+        private final Object fenceKey;
+        private final boolean descending;
+        private AVLNode<K, V> next, lastReturned;
+        private int expectedModCount = modCount;
+
+        EntryIterator(AVLNode<K, V> first, AVLNode<K, V> fence, boolean descending) {
+            this.next = first;
+            this.fenceKey = null == fence ? UNBOUNDED : fence.key;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return null != next && next.key != fenceKey;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            AVLNode<K, V> node = next;
+            if (null == node || node.key == fenceKey) throw new NoSuchElementException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+
+            next = descending ? predecessor(node) : successor(node);
+            lastReturned = node;
+            return node;
+        }
+
+        @Override
+        public void remove() {
+            if (null == lastReturned) throw new IllegalStateException();
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+
+            // 正序时后继(即next)的内容会被移到lastReturned中
+            if (!descending && null != lastReturned.left && null != lastReturned.right) next = lastReturned;
+            deleteNode(lastReturned);
+            expectedModCount = modCount;
+            lastReturned = null;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator(firstNode(), null, false);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            AVLNode<K, V> node = getEntry(entry.getKey());
+            return null != node && Objects.equals(node.value, entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) return false;
+            deleteNode(getEntry(((Entry<?, ?>) o).getKey()));
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            AVLTree.this.clear();
+        }
+    }
+    // =====================================================
+
+    // =====================================================
+    // 区间视图，lo/hi是原树上的上下界，descending为true时按逆序呈现
+    private final class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+        private final K lo, hi;
+        private final boolean fromStart, toEnd;
+        private final boolean loInclusive, hiInclusive;
+        private final boolean descending;
+
+        SubMap(boolean fromStart, K lo, boolean loInclusive,
+               boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            if (!fromStart && !toEnd) {
+                if (compare(lo, hi) > 0) throw new IllegalArgumentException("fromKey > toKey");
+            } else {
+                if (!fromStart) compare(lo, lo);
+                if (!toEnd) compare(hi, hi);
+            }
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(Object key) {
+            if (fromStart) return false;
+            int i = compare(key, lo);
+            return i < 0 || (i == 0 && !loInclusive);
+        }
+
+        private boolean tooHigh(Object key) {
+            if (toEnd) return false;
+            int i = compare(key, hi);
+            return i > 0 || (i == 0 && !hiInclusive);
+        }
+
+        private boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        // 创建子视图时，不包含的边界可以等于当前视图的不包含边界
+        private boolean inRange(Object key, boolean inclusive) {
+            if (inclusive) return inRange(key);
+            return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(hi, key) >= 0);
+        }
+
+        // ===== 原树顺序下的查找
+        private AVLNode<K, V> absLowest() {
+            AVLNode<K, V> node = fromStart ? firstNode() : getEntry(lo, loInclusive ? CEILING : HIGHER);
+            return null == node || tooHigh(node.key) ? null : node;
+        }
+
+        private AVLNode<K, V> absHighest() {
+            AVLNode<K, V> node = toEnd ? lastNode() : getEntry(hi, hiInclusive ? FLOOR : LOWER);
+            return null == node || tooLow(node.key) ? null : node;
+        }
+
+        private AVLNode<K, V> absAbove(K key, int relation) {
+            if (tooLow(key)) return absLowest();
+            AVLNode<K, V> node = getEntry(key, relation);
+            return null == node || tooHigh(node.key) ? null : node;
+        }
+
+        private AVLNode<K, V> absBelow(K key, int relation) {
+            if (tooHigh(key)) return absHighest();
+            AVLNode<K, V> node = getEntry(key, relation);
+            return null == node || tooLow(node.key) ? null : node;
+        }
+
+        // 区间之外的第一个节点，作为迭代器的结束标记
+        private AVLNode<K, V> absHighFence() {
+            return toEnd ? null : getEntry(hi, hiInclusive ? HIGHER : CEILING);
+        }
+
+        private AVLNode<K, V> absLowFence() {
+            return fromStart ? null : getEntry(lo, loInclusive ? LOWER : FLOOR);
+        }
+
+        // ===== 视图顺序下的查找
+        private AVLNode<K, V> lowestNode() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        private AVLNode<K, V> highestNode() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        private AVLNode<K, V> ceilingNode(K key) {
+            return descending ? absBelow(key, FLOOR) : absAbove(key, CEILING);
+        }
+
+        private AVLNode<K, V> higherNode(K key) {
+            return descending ? absBelow(key, LOWER) : absAbove(key, HIGHER);
+        }
+
+        private AVLNode<K, V> floorNode(K key) {
+            return descending ? absAbove(key, CEILING) : absBelow(key, FLOOR);
+        }
+
+        private AVLNode<K, V> lowerNode(K key) {
+            return descending ? absAbove(key, HIGHER) : absBelow(key, LOWER);
+        }
+
+        private SubMap view(boolean fromStart, K lo, boolean loInclusive,
+                            boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            return new SubMap(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, descending);
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        @Override
+        public int size() {
+            if (fromStart && toEnd) return size;
+
+            int count = 0;
+            for (Iterator<Entry<K, V>> it = entrySet().iterator(); it.hasNext(); it.next()) count++;
+            return count;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return null == absLowest();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && AVLTree.this.containsKey(key);
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? AVLTree.this.get(key) : null;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!inRange(key)) throw new IllegalArgumentException("key out of range");
+            return AVLTree.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? AVLTree.this.remove(key) : null;
+        }
+
+        @Override
+        public Entry<K, V> firstEntry() {
+            return export(lowestNode());
+        }
+
+        @Override
+        public Entry<K, V> lastEntry() {
+            return export(highestNode());
+        }
+
+        @Override
+        public Entry<K, V> pollFirstEntry() {
+            AVLNode<K, V> node = lowestNode();
+            Entry<K, V> entry = export(node);
+            if (null != node) deleteNode(node);
+            return entry;
+        }
+
+        @Override
+        public Entry<K, V> pollLastEntry() {
+            AVLNode<K, V> node = highestNode();
+            Entry<K, V> entry = export(node);
+            if (null != node) deleteNode(node);
+            return entry;
+        }
+
+        @Override
+        public K firstKey() {
+            return key(lowestNode());
+        }
+
+        @Override
+        public K lastKey() {
+            return key(highestNode());
+        }
+
+        @Override
+        public Entry<K, V> lowerEntry(K key) {
+            return export(lowerNode(key));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyOrNull(lowerNode(key));
+        }
+
+        @Override
+        public Entry<K, V> floorEntry(K key) {
+            return export(floorNode(key));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyOrNull(floorNode(key));
+        }
+
+        @Override
+        public Entry<K, V> ceilingEntry(K key) {
+            return export(ceilingNode(key));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyOrNull(ceilingNode(key));
+        }
+
+        @Override
+        public Entry<K, V> higherEntry(K key) {
+            return export(higherNode(key));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyOrNull(higherNode(key));
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return descending
+                            ? new EntryIterator(absHighest(), absLowFence(), true)
+                            : new EntryIterator(absLowest(), absHighFence(), false);
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (!(o instanceof Entry)) return false;
+                    Object key = ((Entry<?, ?>) o).getKey();
+                    return inRange(key) && AVLTree.this.entrySet().contains(o);
+                }
+
+                @Override
+                public boolean remove(Object o) {
+                    if (!(o instanceof Entry)) return false;
+                    Object key = ((Entry<?, ?>) o).getKey();
+                    return inRange(key) && AVLTree.this.entrySet().remove(o);
+                }
+
+                @Override
+                public int size() {
+                    return SubMap.this.size();
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return SubMap.this.isEmpty();
+                }
+            };
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new KeySet<>(this);
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return view(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if (!inRange(fromKey, fromInclusive)) throw new IllegalArgumentException("fromKey out of range");
+            if (!inRange(toKey, toInclusive)) throw new IllegalArgumentException("toKey out of range");
+
+            return descending
+                    ? view(false, toKey, toInclusive, false, fromKey, fromInclusive, true)
+                    : view(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            if (!inRange(toKey, inclusive)) throw new IllegalArgumentException("toKey out of range");
+
+            return descending
+                    ? view(false, toKey, inclusive, toEnd, hi, hiInclusive, true)
+                    : view(fromStart, lo, loInclusive, false, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if (!inRange(fromKey, inclusive)) throw new IllegalArgumentException("fromKey out of range");
+
+            return descending
+                    ? view(fromStart, lo, loInclusive, false, fromKey, inclusive, true)
+                    : view(false, fromKey, inclusive, toEnd, hi, hiInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+    // =====================================================
+
+    // =====================================================
+    // key视图，所有操作都委托给map(原树或区间视图)
+    private static final class KeySet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+        private final NavigableMap<E, ?> map;
+
+        KeySet(NavigableMap<E, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            Iterator<? extends Entry<E, ?>> it = map.entrySet().iterator();
+            return new Iterator<E>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public E next() {
+                    return it.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    it.remove();
+                }
+            };
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!map.containsKey(o)) return false;
+            map.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public E first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public E last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public E lower(E e) {
+            return map.lowerKey(e);
+        }
+
+        @Override
+        public E floor(E e) {
+            return map.floorKey(e);
+        }
+
+        @Override
+        public E ceiling(E e) {
+            return map.ceilingKey(e);
+        }
+
+        @Override
+        public E higher(E e) {
+            return map.higherKey(e);
+        }
+
+        @Override
+        public E pollFirst() {
+            Entry<E, ?> entry = map.pollFirstEntry();
+            return null == entry ? null : entry.getKey();
+        }
+
+        @Override
+        public E pollLast() {
+            Entry<E, ?> entry = map.pollLastEntry();
+            return null == entry ? null : entry.getKey();
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<>(map.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            return new KeySet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<>(map.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<>(map.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+    // =====================================================
 
-    private static class AVLNode<T> {
+    private static final class AVLNode<K, V> implements Map.Entry<K, V> {
 
-        int height;
-        T data;
-        AVLNode<T> left, right;
+        byte height;
+        K key;
+        V value;
+        AVLNode<K, V> left, right, parent;
+
+        AVLNode(K key, V value, AVLNode<K, V> parent) {
+            this.key = key;
+            this.value = value;
+            this.parent = parent;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
 
-        public AVLNode() {
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
         }
 
-        public AVLNode(T data, AVLNode<T> left, AVLNode<T> right) {
-            this.data = data;
-            this.left = left;
-            this.right = right;
+        @Override
+        public String toString() {
+            return key + "=" + value;
         }
     }
 
@@ -0,0 +1,665 @@
+package com.jr.test.algorithms.trees;
+
+import com.jr.test.algorithms.sorts.ArgSort;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+/**
+ * long键、long值的内存B+树，键和值都保存在节点内的基本类型数组中，不装箱。
+ * <p>
+ * 1. 节点容量默认为32个键：键数组256字节，即4个相邻的缓存行(64字节)，在节点内二分查找时
+ *    相邻行预取基本可以覆盖，每层只有一次真正的缓存未命中；扇出32使得一千万个键只需要5层，
+ *    而BinarySearchTree每层都是一次指针跳转，一千万个键至少23层(再加上装箱对象的一次跳转)；
+ * 2. 数据只保存在叶子中，叶子按键的顺序单向链接，区间扫描不需要回到内部节点；
+ * 3. 有序插入时最右的叶子/内部节点不对半分裂，而是把新键单独放到新节点中，顺序写入的叶子几乎是满的；
+ * 4. bulkLoad从有序数组自底向上直接构建，putAll先对一批键做基数排序，再按顺序插入，
+ *    键落在上一次的叶子中时不用从根重新查找；
+ * 5. 插入、删除都是迭代实现的，向下查找时记录路径，分裂/合并沿路径向上处理。
+ * <p>
+ * 不是线程安全的；Cursor在树被修改后不再有效。
+ */
+public class BPlusTree {
+
+    public static final int DEFAULT_CAPACITY = 32;
+
+    // 节点数不超过int范围时，最小扇出为2的树高度也不会超过32
+    private static final int MAX_HEIGHT = 32;
+
+    private final int leafCapacity, innerCapacity;
+    private final int minLeaf, minInner;
+
+    private Node root;
+    private int size;
+    private int height;
+
+    // 最近一次descend经过的内部节点，以及在每个节点中选择的子节点下标
+    private final Inner[] path = new Inner[MAX_HEIGHT];
+    private final int[] pathIndex = new int[MAX_HEIGHT];
+
+    // 内部节点分裂时拼接键和子节点用的缓冲区
+    private final long[] splitKeys;
+    private final Node[] splitChildren;
+
+    public BPlusTree() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    public BPlusTree(int leafCapacity, int innerCapacity) {
+        if (leafCapacity < 2) throw new IllegalArgumentException("leafCapacity < 2: " + leafCapacity);
+        if (innerCapacity < 2) throw new IllegalArgumentException("innerCapacity < 2: " + innerCapacity);
+
+        this.leafCapacity = leafCapacity;
+        this.innerCapacity = innerCapacity;
+        this.minLeaf = leafCapacity >>> 1;
+        this.minInner = innerCapacity >>> 1;
+        this.splitKeys = new long[innerCapacity + 1];
+        this.splitChildren = new Node[innerCapacity + 2];
+        this.root = new Leaf(leafCapacity);
+        this.height = 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 层数，只有一个叶子时为1
+     */
+    public int height() {
+        return height;
+    }
+
+    // =====================================================
+    // 查找
+    public boolean containsKey(long key) {
+        Leaf leaf = findLeaf(key);
+        int pos = lowerBound(leaf.keys, leaf.size, key);
+        return pos < leaf.size && leaf.keys[pos] == key;
+    }
+
+    public long get(long key, long defaultValue) {
+        Leaf leaf = findLeaf(key);
+        int pos = lowerBound(leaf.keys, leaf.size, key);
+        return pos < leaf.size && leaf.keys[pos] == key ? leaf.values[pos] : defaultValue;
+    }
+
+    public long firstKey() {
+        if (size == 0) throw new NoSuchElementException();
+        return firstLeaf().keys[0];
+    }
+
+    public long lastKey() {
+        if (size == 0) throw new NoSuchElementException();
+        Node node = root;
+        while (node instanceof Inner) node = ((Inner) node).children[node.size];
+        return node.keys[node.size - 1];
+    }
+
+    private Leaf findLeaf(long key) {
+        Node node = root;
+        while (node instanceof Inner) {
+            node = ((Inner) node).children[upperBound(node.keys, node.size, key)];
+        }
+        return (Leaf) node;
+    }
+
+    private Leaf firstLeaf() {
+        Node node = root;
+        while (node instanceof Inner) node = ((Inner) node).children[0];
+        return (Leaf) node;
+    }
+
+    // 与findLeaf相同，但记录路径，返回路径上内部节点的个数
+    private int descend(long key) {
+        Node node = root;
+        int depth = 0;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int i = upperBound(inner.keys, inner.size, key);
+            path[depth] = inner;
+            pathIndex[depth] = i;
+            depth++;
+            node = inner.children[i];
+        }
+        return depth;
+    }
+
+    private Leaf leafAt(int depth) {
+        return (Leaf) (depth == 0 ? root : path[depth - 1].children[pathIndex[depth - 1]]);
+    }
+
+    // keys[0, n)中第一个不小于key的下标
+    private static int lowerBound(long[] keys, int n, long key) {
+        if (n == 0) return 0;
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = keys[base + half - 1] < key ? base + half : base;
+            n -= half;
+        }
+        return base + (keys[base] < key ? 1 : 0);
+    }
+
+    // keys[0, n)中第一个大于key的下标，即内部节点中key所在子节点的下标
+    private static int upperBound(long[] keys, int n, long key) {
+        if (n == 0) return 0;
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = keys[base + half - 1] <= key ? base + half : base;
+            n -= half;
+        }
+        return base + (keys[base] <= key ? 1 : 0);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 插入
+    /**
+     * 插入或更新，返回key原来是否不存在
+     */
+    public boolean put(long key, long value) {
+        int depth = descend(key);
+        Leaf leaf = leafAt(depth);
+        int pos = lowerBound(leaf.keys, leaf.size, key);
+        if (pos < leaf.size && leaf.keys[pos] == key) {
+            leaf.values[pos] = value;
+            return false;
+        }
+        insert(leaf, pos, key, value, depth);
+        return true;
+    }
+
+    /**
+     * 批量插入或更新，同一批中重复的key以后出现的为准。
+     * 先按key排序，相邻的key通常落在同一个叶子中，只有越过叶子的上界或者叶子分裂后才从根重新查找
+     */
+    public void putAll(long[] keys, long[] values) {
+        if (keys.length != values.length) throw new IllegalArgumentException("keys and values differ in length");
+
+        int[] perm = ArgSort.argsort(keys);
+        Leaf leaf = null;
+        int depth = 0;
+        long high = 0;
+        boolean bounded = false;
+
+        for (int j : perm) {
+            long key = keys[j];
+            if (null == leaf || (bounded && key >= high)) {
+                depth = descend(key);
+                leaf = leafAt(depth);
+
+                // 路径上离叶子最近的右侧分隔键就是这个叶子的上界
+                bounded = false;
+                for (int d = depth - 1; d >= 0; d--) {
+                    if (pathIndex[d] < path[d].size) {
+                        high = path[d].keys[pathIndex[d]];
+                        bounded = true;
+                        break;
+                    }
+                }
+            }
+
+            int pos = lowerBound(leaf.keys, leaf.size, key);
+            if (pos < leaf.size && leaf.keys[pos] == key) {
+                leaf.values[pos] = values[j];
+            } else if (leaf.size < leafCapacity) {
+                insertAt(leaf, pos, key, values[j]);
+                size++;
+            } else {
+                insert(leaf, pos, key, values[j], depth);
+                leaf = null;
+            }
+        }
+    }
+
+    private void insert(Leaf leaf, int pos, long key, long value, int depth) {
+        size++;
+        if (leaf.size < leafCapacity) {
+            insertAt(leaf, pos, key, value);
+            return;
+        }
+
+        Leaf right = splitLeaf(leaf, pos, key, value);
+        long separator = right.keys[0];
+        Node child = right;
+
+        // 沿路径向上插入分隔键，父节点满了就继续分裂
+        for (int d = depth - 1; d >= 0; d--) {
+            Inner parent = path[d];
+            int i = pathIndex[d];
+            if (parent.size < innerCapacity) {
+                insertAt(parent, i, separator, child);
+                return;
+            }
+            Inner sibling = splitInner(parent, i, separator, child);
+            separator = splitKeys[parent.size];
+            child = sibling;
+        }
+
+        Inner newRoot = new Inner(innerCapacity);
+        newRoot.keys[0] = separator;
+        newRoot.children[0] = root;
+        newRoot.children[1] = child;
+        newRoot.size = 1;
+        root = newRoot;
+        height++;
+    }
+
+    private static void insertAt(Leaf leaf, int pos, long key, long value) {
+        int move = leaf.size - pos;
+        System.arraycopy(leaf.keys, pos, leaf.keys, pos + 1, move);
+        System.arraycopy(leaf.values, pos, leaf.values, pos + 1, move);
+        leaf.keys[pos] = key;
+        leaf.values[pos] = value;
+        leaf.size++;
+    }
+
+    // 在第i个键的位置插入key，child成为第i + 1个子节点
+    private static void insertAt(Inner inner, int i, long key, Node child) {
+        System.arraycopy(inner.keys, i, inner.keys, i + 1, inner.size - i);
+        System.arraycopy(inner.children, i + 1, inner.children, i + 2, inner.size - i);
+        inner.keys[i] = key;
+        inner.children[i + 1] = child;
+        inner.size++;
+    }
+
+    // 满的叶子插入一个键后一分为二，返回右半部分
+    private Leaf splitLeaf(Leaf leaf, int pos, long key, long value) {
+        int c = leafCapacity;
+        Leaf right = new Leaf(c);
+        right.next = leaf.next;
+        leaf.next = right;
+
+        if (pos == c && null == right.next) {
+            // 追加到最右的叶子：左边保持满的，新键单独放到右边
+            right.keys[0] = key;
+            right.values[0] = value;
+            right.size = 1;
+            return right;
+        }
+
+        int split = (c + 1) >>> 1;
+        if (pos < split) {
+            int move = c - (split - 1);
+            System.arraycopy(leaf.keys, split - 1, right.keys, 0, move);
+            System.arraycopy(leaf.values, split - 1, right.values, 0, move);
+            right.size = move;
+            leaf.size = split - 1;
+            insertAt(leaf, pos, key, value);
+        } else {
+            int move = c - split;
+            System.arraycopy(leaf.keys, split, right.keys, 0, move);
+            System.arraycopy(leaf.values, split, right.values, 0, move);
+            right.size = move;
+            leaf.size = split;
+            insertAt(right, pos - split, key, value);
+        }
+        return right;
+    }
+
+    // 满的内部节点插入一个键后一分为二，中间的键splitKeys[inner.size]上移到父节点，返回右半部分
+    private Inner splitInner(Inner inner, int i, long key, Node child) {
+        int c = innerCapacity;
+        System.arraycopy(inner.keys, 0, splitKeys, 0, i);
+        splitKeys[i] = key;
+        System.arraycopy(inner.keys, i, splitKeys, i + 1, c - i);
+        System.arraycopy(inner.children, 0, splitChildren, 0, i + 1);
+        splitChildren[i + 1] = child;
+        System.arraycopy(inner.children, i + 1, splitChildren, i + 2, c - i);
+
+        // 最右的节点在末尾插入时左边保持c - 1个键，右边只有一个键(至少要有一个键，删除时才有兄弟节点可以借用/合并)
+        boolean append = i == c && isRightmost(inner);
+        int mid = append ? c - 1 : (c + 1) >>> 1;
+
+        Inner right = new Inner(c);
+        right.size = c - mid;
+        System.arraycopy(splitKeys, mid + 1, right.keys, 0, right.size);
+        System.arraycopy(splitChildren, mid + 1, right.children, 0, right.size + 1);
+
+        inner.size = mid;
+        System.arraycopy(splitKeys, 0, inner.keys, 0, mid);
+        System.arraycopy(splitChildren, 0, inner.children, 0, mid + 1);
+        for (int k = mid + 1; k <= c; k++) inner.children[k] = null;
+        return right;
+    }
+
+    // inner是否在它那一层的最右边(路径上的每一步都选择了最后一个子节点)
+    private boolean isRightmost(Inner inner) {
+        for (int d = 0; path[d] != inner; d++) {
+            if (pathIndex[d] != path[d].size) return false;
+        }
+        return true;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 删除
+    /**
+     * 删除key，返回key原来是否存在
+     */
+    public boolean remove(long key) {
+        int depth = descend(key);
+        Leaf leaf = leafAt(depth);
+        int pos = lowerBound(leaf.keys, leaf.size, key);
+        if (pos == leaf.size || leaf.keys[pos] != key) return false;
+
+        int move = leaf.size - pos - 1;
+        System.arraycopy(leaf.keys, pos + 1, leaf.keys, pos, move);
+        System.arraycopy(leaf.values, pos + 1, leaf.values, pos, move);
+        leaf.size--;
+        size--;
+
+        if (depth > 0 && leaf.size < minLeaf) fixLeaf(leaf, depth);
+        return true;
+    }
+
+    // 叶子不足半满：先向兄弟借一个键，兄弟也不够时与兄弟合并，父节点少一个键
+    private void fixLeaf(Leaf leaf, int depth) {
+        Inner parent = path[depth - 1];
+        int i = pathIndex[depth - 1];
+        Leaf left = i > 0 ? (Leaf) parent.children[i - 1] : null;
+        Leaf right = i < parent.size ? (Leaf) parent.children[i + 1] : null;
+
+        if (null != left && left.size > minLeaf) {
+            insertAt(leaf, 0, left.keys[left.size - 1], left.values[left.size - 1]);
+            left.size--;
+            parent.keys[i - 1] = leaf.keys[0];
+        } else if (null != right && right.size > minLeaf) {
+            leaf.keys[leaf.size] = right.keys[0];
+            leaf.values[leaf.size] = right.values[0];
+            leaf.size++;
+            System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+            System.arraycopy(right.values, 1, right.values, 0, right.size - 1);
+            right.size--;
+            parent.keys[i] = right.keys[0];
+        } else {
+            if (null != left) {
+                mergeLeaves(left, leaf);
+                removeAt(parent, i - 1);
+            } else {
+                mergeLeaves(leaf, right);
+                removeAt(parent, i);
+            }
+            fixInner(depth - 1);
+        }
+    }
+
+    private static void mergeLeaves(Leaf left, Leaf right) {
+        System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+        System.arraycopy(right.values, 0, left.values, left.size, right.size);
+        left.size += right.size;
+        left.next = right.next;
+    }
+
+    // 删除第i个键和第i + 1个子节点
+    private static void removeAt(Inner inner, int i) {
+        System.arraycopy(inner.keys, i + 1, inner.keys, i, inner.size - i - 1);
+        System.arraycopy(inner.children, i + 2, inner.children, i + 1, inner.size - i - 1);
+        inner.children[inner.size] = null;
+        inner.size--;
+    }
+
+    // 从path[d]开始向上处理不足半满的内部节点
+    private void fixInner(int d) {
+        for (; d > 0; d--) {
+            Inner inner = path[d];
+            if (inner.size >= minInner) return;
+
+            Inner parent = path[d - 1];
+            int i = pathIndex[d - 1];
+            Inner left = i > 0 ? (Inner) parent.children[i - 1] : null;
+            Inner right = i < parent.size ? (Inner) parent.children[i + 1] : null;
+
+            if (null != left && left.size > minInner) {
+                // 父节点的分隔键下移到inner的最前面，left的最后一个键上移
+                System.arraycopy(inner.keys, 0, inner.keys, 1, inner.size);
+                System.arraycopy(inner.children, 0, inner.children, 1, inner.size + 1);
+                inner.keys[0] = parent.keys[i - 1];
+                inner.children[0] = left.children[left.size];
+                inner.size++;
+                parent.keys[i - 1] = left.keys[left.size - 1];
+                left.children[left.size] = null;
+                left.size--;
+                return;
+            } else if (null != right && right.size > minInner) {
+                inner.keys[inner.size] = parent.keys[i];
+                inner.children[inner.size + 1] = right.children[0];
+                inner.size++;
+                parent.keys[i] = right.keys[0];
+                System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+                System.arraycopy(right.children, 1, right.children, 0, right.size);
+                right.children[right.size] = null;
+                right.size--;
+                return;
+            } else if (null != left) {
+                mergeInner(left, parent.keys[i - 1], inner);
+                removeAt(parent, i - 1);
+            } else {
+                mergeInner(inner, parent.keys[i], right);
+                removeAt(parent, i);
+            }
+        }
+
+        // 根节点只剩一个子节点时树降低一层
+        Inner top = path[0];
+        if (root == top && top.size == 0) {
+            root = top.children[0];
+            height--;
+        }
+    }
+
+    private static void mergeInner(Inner left, long separator, Inner right) {
+        left.keys[left.size] = separator;
+        System.arraycopy(right.keys, 0, left.keys, left.size + 1, right.size);
+        System.arraycopy(right.children, 0, left.children, left.size + 1, right.size + 1);
+        left.size += right.size + 1;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 从有序数组构建
+    public void bulkLoad(long[] sortedKeys, long[] values) {
+        bulkLoad(sortedKeys, values, 1.0);
+    }
+
+    /**
+     * 丢弃原有内容，从严格递增的键构建。values为null时值为键的下标；
+     * fillFactor为每个节点的填充比例(0.5 ~ 1.0)，之后还要随机插入时留出空间可以减少分裂
+     */
+    public void bulkLoad(long[] sortedKeys, long[] values, double fillFactor) {
+        int n = sortedKeys.length;
+        if (null != values && values.length != n) throw new IllegalArgumentException("keys and values differ in length");
+        if (fillFactor < 0.5 || fillFactor > 1.0) throw new IllegalArgumentException("fillFactor: " + fillFactor);
+        for (int i = 1; i < n; i++) {
+            if (sortedKeys[i - 1] >= sortedKeys[i]) throw new IllegalArgumentException("keys are not strictly increasing at " + i);
+        }
+
+        size = n;
+        height = 1;
+        if (n == 0) {
+            root = new Leaf(leafCapacity);
+            return;
+        }
+
+        // 叶子：数量按填充比例计算，再把键均匀地分到每个叶子中
+        int perLeaf = Math.max(1, (int) (leafCapacity * fillFactor));
+        int count = (n + perLeaf - 1) / perLeaf;
+        Node[] level = new Node[count];
+        long[] lows = new long[count];
+        Leaf prev = null;
+        for (int j = 0, from = 0; j < count; j++) {
+            int to = (int) ((long) n * (j + 1) / count);
+            Leaf leaf = new Leaf(leafCapacity);
+            leaf.size = to - from;
+            System.arraycopy(sortedKeys, from, leaf.keys, 0, leaf.size);
+            for (int k = 0; k < leaf.size; k++) {
+                leaf.values[k] = null == values ? from + k : values[from + k];
+            }
+            if (null != prev) prev.next = leaf;
+            prev = leaf;
+            level[j] = leaf;
+            lows[j] = sortedKeys[from];
+            from = to;
+        }
+
+        // 内部节点：每个节点最多innerCapacity + 1个子节点，分隔键为右侧子树中最小的键
+        int perInner = Math.max(2, (int) (innerCapacity * fillFactor) + 1);
+        while (count > 1) {
+            int parents = (count + perInner - 1) / perInner;
+            // 每个内部节点至少两个子节点(一个键)
+            while (parents > 1 && count < 2 * parents) parents--;
+            Node[] upper = new Node[parents];
+            long[] upperLows = new long[parents];
+            for (int j = 0, from = 0; j < parents; j++) {
+                int to = (int) ((long) count * (j + 1) / parents);
+                Inner inner = new Inner(innerCapacity);
+                inner.size = to - from - 1;
+                System.arraycopy(level, from, inner.children, 0, to - from);
+                System.arraycopy(lows, from + 1, inner.keys, 0, inner.size);
+                upper[j] = inner;
+                upperLows[j] = lows[from];
+                from = to;
+            }
+            level = upper;
+            lows = upperLows;
+            count = parents;
+            height++;
+        }
+        root = level[0];
+    }
+    // =====================================================
+
+    // =====================================================
+    // 区间扫描
+    public interface Visitor {
+        void visit(long key, long value);
+    }
+
+    /**
+     * 按顺序访问[from, to]中的每个键值对，返回访问的个数
+     */
+    public int scan(long from, long to, Visitor visitor) {
+        if (from > to) return 0;
+
+        int count = 0;
+        Leaf leaf = findLeaf(from);
+        int pos = lowerBound(leaf.keys, leaf.size, from);
+        for (; null != leaf; leaf = leaf.next, pos = 0) {
+            for (; pos < leaf.size; pos++) {
+                long key = leaf.keys[pos];
+                if (key > to) return count;
+                visitor.visit(key, leaf.values[pos]);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 定位到第一个不小于from的键，之后每次next()前进一个
+     */
+    public Cursor cursor(long from) {
+        Leaf leaf = findLeaf(from);
+        return new Cursor(leaf, lowerBound(leaf.keys, leaf.size, from) - 1);
+    }
+
+    public static final class Cursor {
+
+        private Leaf leaf;
+        private int pos;
+
+        private Cursor(Leaf leaf, int pos) {
+            this.leaf = leaf;
+            this.pos = pos;
+        }
+
+        /**
+         * 移到下一个键值对，没有更多时返回false
+         */
+        public boolean next() {
+            if (null == leaf) return false;
+            pos++;
+            while (pos >= leaf.size) {
+                leaf = leaf.next;
+                pos = 0;
+                if (null == leaf) return false;
+            }
+            return true;
+        }
+
+        public long key() {
+            return leaf.keys[pos];
+        }
+
+        public long value() {
+            return leaf.values[pos];
+        }
+    }
+    // =====================================================
+
+    // =====================================================
+    /**
+     * 估算占用的内存(64位JVM、压缩指针：对象头12字节，数组头16字节，按8字节对齐)
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            bytes += align(16 + 8L * node.keys.length);
+            if (node instanceof Leaf) {
+                bytes += align(12 + 4 + 4 + 4 + 4) + align(16 + 8L * ((Leaf) node).values.length);
+            } else {
+                Inner inner = (Inner) node;
+                bytes += align(12 + 4 + 4 + 4) + align(16 + 4L * inner.children.length);
+                for (int i = 0; i <= inner.size; i++) queue.add(inner.children[i]);
+            }
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+    // =====================================================
+
+    private abstract static class Node {
+
+        final long[] keys;
+        int size;
+
+        Node(int capacity) {
+            this.keys = new long[capacity];
+        }
+    }
+
+    // 第i个子节点中的键在[keys[i - 1], keys[i])之间
+    private static final class Inner extends Node {
+
+        final Node[] children;
+
+        Inner(int capacity) {
+            super(capacity);
+            this.children = new Node[capacity + 1];
+        }
+    }
+
+    private static final class Leaf extends Node {
+
+        final long[] values;
+        Leaf next;
+
+        Leaf(int capacity) {
+            super(capacity);
+            this.values = new long[capacity];
+        }
+    }
+
+}
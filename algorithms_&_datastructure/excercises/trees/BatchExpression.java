@@ -0,0 +1,418 @@
+package com.jr.test.algorithms.trees;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按列批量求值：同一个公式对很多行求值时，不再每行遍历一次树，而是每个运算节点对一批行(BATCH_SIZE行)执行一个紧凑的循环。
+ * <p>
+ * 1. 编译时先用ExpressionNode.Factory把树转换成DAG(公共子表达式只算一次)，只含常数的子表达式直接折叠成常数；
+ * 2. 按子节点在前的顺序为每个运算节点生成一步：操作数是变量的列、常数或者前面某一步的结果缓冲区；
+ *    缓冲区在编译时按生存期分配，一个结果最后一次被使用之后它的缓冲区就可以给后面的步骤复用，
+ *    所以缓冲区的个数通常远小于节点数；最后一步直接写到输出数组中；
+ * 3. 缓冲区在编译时分配、在所有批次之间复用，evaluate不分配任何对象；
+ * 4. 加减乘除、取负以及abs、sqrt、min、max都有专门的循环("数组op数组"、"数组op常数"或"常数op数组")，
+ *    循环体内没有分支，C2可以自动向量化(SIMD)；其它函数逐个元素调用ExpressionOperator.apply。
+ * <p>
+ * 同一个实例不是线程安全的，多线程时每个线程使用copy()得到的实例。
+ */
+public final class BatchExpression {
+
+    public static final int BATCH_SIZE = 1024;
+
+    // 操作数的类型
+    private static final int COLUMN = 0, TEMP = 1, SCALAR = 2, OUT = 3;
+
+    private final String[] variables;
+
+    // 第i步：ops[i]是ExpressionOperator的编号，a/b是操作数，dst是结果缓冲区(TEMP)或者OUT
+    private final int[] ops;
+    private final int[] aKinds, aIndexes, bKinds, bIndexes;
+    private final int[] dstKinds, dsts;
+    private final double[] scalars;
+
+    // 整个公式是一个叶子时没有步骤：rootKind是COLUMN或SCALAR
+    private final int rootKind, rootIndex;
+
+    private final double[][] temps;
+
+    private BatchExpression(BatchExpression that) {
+        this.variables = that.variables;
+        this.ops = that.ops;
+        this.aKinds = that.aKinds;
+        this.aIndexes = that.aIndexes;
+        this.bKinds = that.bKinds;
+        this.bIndexes = that.bIndexes;
+        this.dstKinds = that.dstKinds;
+        this.dsts = that.dsts;
+        this.scalars = that.scalars;
+        this.rootKind = that.rootKind;
+        this.rootIndex = that.rootIndex;
+        this.temps = new double[that.temps.length][BATCH_SIZE];
+    }
+
+    private BatchExpression(Planner p) {
+        this.variables = p.variables;
+        this.ops = Arrays.copyOf(p.ops, p.steps);
+        this.aKinds = Arrays.copyOf(p.aKinds, p.steps);
+        this.aIndexes = Arrays.copyOf(p.aIndexes, p.steps);
+        this.bKinds = Arrays.copyOf(p.bKinds, p.steps);
+        this.bIndexes = Arrays.copyOf(p.bIndexes, p.steps);
+        this.dstKinds = Arrays.copyOf(p.dstKinds, p.steps);
+        this.dsts = Arrays.copyOf(p.dsts, p.steps);
+        this.scalars = Arrays.copyOf(p.scalars, p.scalarCount);
+        this.rootKind = p.rootKind;
+        this.rootIndex = p.rootIndex;
+        this.temps = new double[p.tempCount][BATCH_SIZE];
+    }
+
+    /**
+     * 共享编译结果、拥有自己的缓冲区的副本
+     */
+    public BatchExpression copy() {
+        return new BatchExpression(this);
+    }
+
+    public String[] variables() {
+        return variables.clone();
+    }
+
+    /**
+     * 步骤数
+     */
+    public int steps() {
+        return ops.length;
+    }
+
+    /**
+     * 中间结果缓冲区的个数，每个BATCH_SIZE个double
+     */
+    public int buffers() {
+        return temps.length;
+    }
+
+    // =====================================================
+    // 编译
+    public static BatchExpression compile(TreeNode root, String... variables) {
+        return compile(new ExpressionNode.Factory().intern(root), variables);
+    }
+
+    public static BatchExpression compile(ExpressionNode root, String... variables) {
+        return new BatchExpression(new Planner(variables).plan(root));
+    }
+
+    private static final class Planner {
+
+        private final String[] variables;
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        private int[] ops = new int[16], aKinds = new int[16], aIndexes = new int[16];
+        private int[] bKinds = new int[16], bIndexes = new int[16], dstKinds = new int[16], dsts = new int[16];
+        private int steps;
+
+        private double[] scalars = new double[8];
+        private int scalarCount;
+
+        private int tempCount;
+        private int rootKind, rootIndex;
+
+        Planner(String[] variables) {
+            this.variables = variables.clone();
+            for (int i = 0; i < variables.length; i++) {
+                if (null != slots.put(variables[i], i)) {
+                    throw new IllegalArgumentException("duplicate variable: " + variables[i]);
+                }
+            }
+        }
+
+        Planner plan(ExpressionNode root) {
+            // 子节点的id小于父节点：收集从root可达的节点，按id从小到大就是一个合法的计算顺序
+            ExpressionNode[] nodes = new ExpressionNode[root.id() + 1];
+            ExpressionNode[] stack = new ExpressionNode[16];
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                ExpressionNode node = stack[--top];
+                if (null != nodes[node.id()]) continue;
+                nodes[node.id()] = node;
+                if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                if (null != node.left()) stack[top++] = node.left();
+                if (null != node.right()) stack[top++] = node.right();
+            }
+
+            // 每个节点的值在哪里：kind/index；常数折叠
+            int n = nodes.length;
+            int[] kind = new int[n], index = new int[n];
+            double[] constant = new double[n];
+            boolean[] isConstant = new boolean[n];
+            // 每个运算节点最后一次被使用的节点id
+            int[] lastUse = new int[n];
+            for (ExpressionNode node : nodes) {
+                if (null == node) continue;
+                int id = node.id();
+                if (node.isConstant()) {
+                    isConstant[id] = true;
+                    constant[id] = node.constant();
+                } else if (node.isVariable()) {
+                    Integer slot = slots.get(node.text());
+                    if (null == slot) throw new IllegalArgumentException("unknown variable: " + node.text());
+                    kind[id] = COLUMN;
+                    index[id] = slot;
+                } else {
+                    int l = node.left().id(), r = null == node.right() ? -1 : node.right().id();
+                    if (isConstant[l] && (r < 0 || isConstant[r])) {
+                        isConstant[id] = true;
+                        constant[id] = node.operator().apply(constant[l], r < 0 ? 0 : constant[r]);
+                    } else {
+                        lastUse[l] = id;
+                        if (r >= 0) lastUse[r] = id;
+                    }
+                }
+            }
+
+            if (isConstant[root.id()]) {
+                rootKind = SCALAR;
+                rootIndex = scalar(constant[root.id()]);
+                return this;
+            }
+            if (root.isVariable()) {
+                rootKind = COLUMN;
+                rootIndex = index[root.id()];
+                return this;
+            }
+
+            // 按id顺序生成步骤，操作数最后一次使用后释放它的缓冲区，结果可以直接覆盖操作数(逐元素运算，同一下标先读后写)
+            int[] free = new int[16];
+            int freeTop = 0;
+            for (ExpressionNode node : nodes) {
+                if (null == node || node.isLeaf() || isConstant[node.id()]) continue;
+                int id = node.id();
+                int l = node.left().id(), r = null == node.right() ? -1 : node.right().id();
+
+                if (steps == ops.length) growSteps();
+                ops[steps] = node.operator().ordinal();
+                aKinds[steps] = isConstant[l] ? SCALAR : kind[l];
+                aIndexes[steps] = isConstant[l] ? scalar(constant[l]) : index[l];
+                if (r >= 0) {
+                    bKinds[steps] = isConstant[r] ? SCALAR : kind[r];
+                    bIndexes[steps] = isConstant[r] ? scalar(constant[r]) : index[r];
+                } else {
+                    // 一元运算没有第二个操作数
+                    bKinds[steps] = SCALAR;
+                    bIndexes[steps] = -1;
+                }
+
+                if (!isConstant[l] && kind[l] == TEMP && lastUse[l] == id) {
+                    if (freeTop == free.length) free = Arrays.copyOf(free, freeTop * 2);
+                    free[freeTop++] = index[l];
+                }
+                if (r >= 0 && r != l && !isConstant[r] && kind[r] == TEMP && lastUse[r] == id) {
+                    if (freeTop == free.length) free = Arrays.copyOf(free, freeTop * 2);
+                    free[freeTop++] = index[r];
+                }
+
+                if (node == root) {
+                    dstKinds[steps] = OUT;
+                } else {
+                    kind[id] = TEMP;
+                    index[id] = freeTop > 0 ? free[--freeTop] : tempCount++;
+                    dstKinds[steps] = TEMP;
+                    dsts[steps] = index[id];
+                }
+                steps++;
+            }
+            return this;
+        }
+
+        private int scalar(double value) {
+            for (int i = 0; i < scalarCount; i++) {
+                if (Double.doubleToRawLongBits(scalars[i]) == Double.doubleToRawLongBits(value)) return i;
+            }
+            if (scalarCount == scalars.length) scalars = Arrays.copyOf(scalars, scalarCount * 2);
+            scalars[scalarCount] = value;
+            return scalarCount++;
+        }
+
+        private void growSteps() {
+            int n = ops.length * 2;
+            ops = Arrays.copyOf(ops, n);
+            aKinds = Arrays.copyOf(aKinds, n);
+            aIndexes = Arrays.copyOf(aIndexes, n);
+            bKinds = Arrays.copyOf(bKinds, n);
+            bIndexes = Arrays.copyOf(bIndexes, n);
+            dstKinds = Arrays.copyOf(dstKinds, n);
+            dsts = Arrays.copyOf(dsts, n);
+        }
+    }
+    // =====================================================
+
+    // =====================================================
+    // 求值
+    /**
+     * columns[i]是第i个变量的列，对前out.length行求值
+     */
+    public void evaluate(double[][] columns, double[] out) {
+        evaluate(columns, 0, out.length, out);
+    }
+
+    /**
+     * 对[from, to)行求值，结果写到out的同样位置
+     */
+    public void evaluate(double[][] columns, int from, int to, double[] out) {
+        if (columns.length != variables.length) {
+            throw new IllegalArgumentException("expected " + variables.length + " columns, got " + columns.length);
+        }
+        for (double[] column : columns) {
+            if (column.length < to) throw new IllegalArgumentException("column shorter than " + to);
+        }
+        if (from < 0 || from > to || out.length < to) throw new IndexOutOfBoundsException();
+
+        if (ops.length == 0) {
+            if (rootKind == SCALAR) {
+                Arrays.fill(out, from, to, scalars[rootIndex]);
+            } else {
+                System.arraycopy(columns[rootIndex], from, out, from, to - from);
+            }
+            return;
+        }
+
+        for (int start = from; start < to; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, to - start);
+            for (int step = 0; step < ops.length; step++) {
+                double[] d;
+                int dOff;
+                if (dstKinds[step] == OUT) {
+                    d = out;
+                    dOff = start;
+                } else {
+                    d = temps[dsts[step]];
+                    dOff = 0;
+                }
+
+                ExpressionOperator op = ExpressionOperator.valueOf(ops[step]);
+                int aKind = aKinds[step], bKind = bKinds[step];
+                if (op.arity == 1) {
+                    unary(op, array(aKind, aIndexes[step], columns), offset(aKind, start), d, dOff, n);
+                } else if (bKind == SCALAR) {
+                    arrayScalar(op, array(aKind, aIndexes[step], columns), offset(aKind, start), scalars[bIndexes[step]],
+                            d, dOff, n);
+                } else if (aKind == SCALAR) {
+                    scalarArray(op, scalars[aIndexes[step]], array(bKind, bIndexes[step], columns), offset(bKind, start),
+                            d, dOff, n);
+                } else {
+                    arrayArray(op, array(aKind, aIndexes[step], columns), offset(aKind, start),
+                            array(bKind, bIndexes[step], columns), offset(bKind, start), d, dOff, n);
+                }
+            }
+        }
+    }
+
+    private double[] array(int kind, int index, double[][] columns) {
+        return kind == COLUMN ? columns[index] : temps[index];
+    }
+
+    // 列按行号定位，缓冲区总是从0开始
+    private static int offset(int kind, int start) {
+        return kind == COLUMN ? start : 0;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 每种运算一个循环，循环体内没有分支
+    private static void arrayArray(ExpressionOperator op, double[] a, int aOff, double[] b, int bOff,
+                                   double[] d, int dOff, int n) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < n; i++) d[dOff + i] = a[aOff + i] + b[bOff + i];
+                break;
+            case SUB:
+                for (int i = 0; i < n; i++) d[dOff + i] = a[aOff + i] - b[bOff + i];
+                break;
+            case MUL:
+                for (int i = 0; i < n; i++) d[dOff + i] = a[aOff + i] * b[bOff + i];
+                break;
+            case DIV:
+                for (int i = 0; i < n; i++) d[dOff + i] = a[aOff + i] / b[bOff + i];
+                break;
+            case MIN:
+                for (int i = 0; i < n; i++) d[dOff + i] = Math.min(a[aOff + i], b[bOff + i]);
+                break;
+            case MAX:
+                for (int i = 0; i < n; i++) d[dOff + i] = Math.max(a[aOff + i], b[bOff + i]);
+                break;
+            default:
+                for (int i = 0; i < n; i++) d[dOff + i] = op.apply(a[aOff + i], b[bOff + i]);
+        }
+    }
+
+    private static void arrayScalar(ExpressionOperator op, double[] a, int aOff, double s,
+                                    double[] d, int dOff, int n) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < n; i++) d[dOff + i] = a[aOff + i] + s;
+                break;
+            case SUB:
+                for (int i = 0; i < n; i++) d[dOff + i] = a[aOff + i] - s;
+                break;
+            case MUL:
+                for (int i = 0; i < n; i++) d[dOff + i] = a[aOff + i] * s;
+                break;
+            case DIV:
+                for (int i = 0; i < n; i++) d[dOff + i] = a[aOff + i] / s;
+                break;
+            case MIN:
+                for (int i = 0; i < n; i++) d[dOff + i] = Math.min(a[aOff + i], s);
+                break;
+            case MAX:
+                for (int i = 0; i < n; i++) d[dOff + i] = Math.max(a[aOff + i], s);
+                break;
+            default:
+                for (int i = 0; i < n; i++) d[dOff + i] = op.apply(a[aOff + i], s);
+        }
+    }
+
+    private static void scalarArray(ExpressionOperator op, double s, double[] b, int bOff,
+                                    double[] d, int dOff, int n) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < n; i++) d[dOff + i] = s + b[bOff + i];
+                break;
+            case SUB:
+                for (int i = 0; i < n; i++) d[dOff + i] = s - b[bOff + i];
+                break;
+            case MUL:
+                for (int i = 0; i < n; i++) d[dOff + i] = s * b[bOff + i];
+                break;
+            case DIV:
+                for (int i = 0; i < n; i++) d[dOff + i] = s / b[bOff + i];
+                break;
+            case MIN:
+                for (int i = 0; i < n; i++) d[dOff + i] = Math.min(s, b[bOff + i]);
+                break;
+            case MAX:
+                for (int i = 0; i < n; i++) d[dOff + i] = Math.max(s, b[bOff + i]);
+                break;
+            default:
+                for (int i = 0; i < n; i++) d[dOff + i] = op.apply(s, b[bOff + i]);
+        }
+    }
+
+    private static void unary(ExpressionOperator op, double[] a, int aOff, double[] d, int dOff, int n) {
+        switch (op) {
+            case NEG:
+                for (int i = 0; i < n; i++) d[dOff + i] = -a[aOff + i];
+                break;
+            case ABS:
+                for (int i = 0; i < n; i++) d[dOff + i] = Math.abs(a[aOff + i]);
+                break;
+            case SQRT:
+                for (int i = 0; i < n; i++) d[dOff + i] = Math.sqrt(a[aOff + i]);
+                break;
+            default:
+                for (int i = 0; i < n; i++) d[dOff + i] = op.apply(a[aOff + i], 0);
+        }
+    }
+    // =====================================================
+
+}
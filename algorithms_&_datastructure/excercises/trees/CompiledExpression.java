@@ -0,0 +1,405 @@
+package com.jr.test.algorithms.trees;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 把ExpressionTreeBuilder生成的表达式树编译成一个栈式虚拟机的字节码，用于同一个公式对不同变量取值的反复求值。
+ * <p>
+ * 1. 编译时先把树转换成DAG：结构相同的子表达式只保留一个节点(公共子表达式消除)，+和*的两个操作数按编号排序，
+ *    a + b和b + a也视为同一个子表达式；两个操作数都是常数的运算直接算出结果(常量折叠)，
+ *    另外x * 1、1 * x、x / 1、x - 0替换为x。浮点运算不满足结合律，(a + 1) + 2不会被合并；
+ * 2. 被引用多次的节点第一次算出后保存到临时槽(TEE)，之后直接读取(LOAD_TMP)；
+ * 3. 每条指令是一个int，低8位是操作码，高24位是操作数(常量/变量/临时槽的下标)；右操作数是变量或常数时
+ *    使用合并指令(例如ADD_VAR)，少一次入栈和一次分派；
+ * 4. 其余运算(^、取负和ExpressionOperator中的函数)使用通用的CALL1/CALL2指令，操作数是运算符的编号；
+ * 5. 叶子节点是数字时作为常数，否则是变量名，编译时按variables的顺序映射为double[]中的下标；
+ * 6. 编译和DAG的生成都是非递归的，退化成链的深树也可以编译。
+ * <p>
+ * evaluate不分配任何对象，操作数栈和临时槽在编译时按最大深度分配好，所以同一个实例不是线程安全的，
+ * 多线程时每个线程使用copy()得到的实例(共享字节码)。
+ */
+public final class CompiledExpression {
+
+    // 操作码
+    private static final int CONST = 0, VAR = 1, LOAD_TMP = 2, TEE = 3;
+    private static final int ADD = 4, SUB = 5, MUL = 6, DIV = 7;
+    private static final int ADD_VAR = 8, SUB_VAR = 9, MUL_VAR = 10, DIV_VAR = 11;
+    private static final int ADD_CONST = 12, SUB_CONST = 13, MUL_CONST = 14, DIV_CONST = 15;
+    private static final int CALL1 = 16, CALL2 = 17;
+
+    private static final int OPERAND_SHIFT = 8, OPCODE_MASK = 0xFF;
+    private static final int MAX_OPERAND = (1 << (32 - OPERAND_SHIFT)) - 1;
+
+    private final int[] code;
+    private final double[] constants;
+    private final String[] variables;
+    private final int maxStack, temps;
+
+    // 操作数栈在前maxStack个位置，临时槽在后面
+    private final double[] stack;
+
+    private CompiledExpression(int[] code, double[] constants, String[] variables, int maxStack, int temps) {
+        this.code = code;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxStack = maxStack;
+        this.temps = temps;
+        this.stack = new double[maxStack + temps];
+    }
+
+    /**
+     * 共享字节码、拥有自己的操作数栈的副本
+     */
+    public CompiledExpression copy() {
+        return new CompiledExpression(code, constants, variables, maxStack, temps);
+    }
+
+    public String[] variables() {
+        return variables.clone();
+    }
+
+    /**
+     * 字节码的指令条数
+     */
+    public int length() {
+        return code.length;
+    }
+
+    // =====================================================
+    // 求值
+    /**
+     * vars[i]是第i个变量的值，顺序与compile时的variables相同
+     */
+    public double evaluate(double[] vars) {
+        final int[] code = this.code;
+        final double[] constants = this.constants;
+        final double[] s = this.stack;
+        final int tmp = maxStack;
+        int sp = 0;
+
+        for (int ins : code) {
+            int operand = ins >>> OPERAND_SHIFT;
+            switch (ins & OPCODE_MASK) {
+                case CONST:
+                    s[sp++] = constants[operand];
+                    break;
+                case VAR:
+                    s[sp++] = vars[operand];
+                    break;
+                case LOAD_TMP:
+                    s[sp++] = s[tmp + operand];
+                    break;
+                case TEE:
+                    s[tmp + operand] = s[sp - 1];
+                    break;
+                case ADD:
+                    sp--;
+                    s[sp - 1] += s[sp];
+                    break;
+                case SUB:
+                    sp--;
+                    s[sp - 1] -= s[sp];
+                    break;
+                case MUL:
+                    sp--;
+                    s[sp - 1] *= s[sp];
+                    break;
+                case DIV:
+                    sp--;
+                    s[sp - 1] /= s[sp];
+                    break;
+                case ADD_VAR:
+                    s[sp - 1] += vars[operand];
+                    break;
+                case SUB_VAR:
+                    s[sp - 1] -= vars[operand];
+                    break;
+                case MUL_VAR:
+                    s[sp - 1] *= vars[operand];
+                    break;
+                case DIV_VAR:
+                    s[sp - 1] /= vars[operand];
+                    break;
+                case ADD_CONST:
+                    s[sp - 1] += constants[operand];
+                    break;
+                case SUB_CONST:
+                    s[sp - 1] -= constants[operand];
+                    break;
+                case MUL_CONST:
+                    s[sp - 1] *= constants[operand];
+                    break;
+                case DIV_CONST:
+                    s[sp - 1] /= constants[operand];
+                    break;
+                case CALL1:
+                    s[sp - 1] = ExpressionOperator.valueOf(operand).apply(s[sp - 1], 0);
+                    break;
+                case CALL2:
+                    sp--;
+                    s[sp - 1] = ExpressionOperator.valueOf(operand).apply(s[sp - 1], s[sp]);
+                    break;
+                default:
+                    throw new IllegalStateException("bad opcode: " + (ins & OPCODE_MASK));
+            }
+        }
+        return s[0];
+    }
+    // =====================================================
+
+    // =====================================================
+    // 编译
+    public static CompiledExpression compile(TreeNode root, String... variables) {
+        Objects.requireNonNull(root, "root");
+        Dag dag = new Dag(variables);
+        int top = dag.build(root);
+        return dag.emit(top);
+    }
+
+    /**
+     * DAG的节点用编号表示，子节点的编号总是小于父节点。叶子节点的left为-1，right是常量/变量的下标；
+     * 一元运算节点的right为-1
+     */
+    private static final class Dag {
+
+        private static final int LEAF_CONST = -1, LEAF_VAR = -2;
+
+        private final String[] variables;
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        private final Map<Double, Integer> constantIndex = new HashMap<>();
+        private double[] constants = new double[8];
+        private int constantCount;
+
+        // 节点：op为ExpressionOperator的编号或LEAF_CONST/LEAF_VAR
+        private int[] op = new int[16], left = new int[16], right = new int[16];
+        private int size;
+        private final Map<Long, Integer> interned = new HashMap<>();
+
+        // build时已经生成的子节点编号
+        private int[] ids = new int[16];
+        private int top;
+
+        Dag(String[] variables) {
+            this.variables = variables.clone();
+            for (int i = 0; i < variables.length; i++) {
+                if (null != slots.put(variables[i], i)) {
+                    throw new IllegalArgumentException("duplicate variable: " + variables[i]);
+                }
+            }
+        }
+
+        // 后序遍历表达式树，访问运算符时它的操作数在栈顶
+        int build(TreeNode root) {
+            TreeTraveller.traverse(root, TreeTraveller.Order.POST, this::visit);
+            return ids[0];
+        }
+
+        private void visit(TreeNode node) {
+            int id;
+            if (null == node.getLeftChild()) {
+                if (null != node.getRightChild()) {
+                    throw new IllegalArgumentException("missing left operand: " + node.getValue());
+                }
+                id = leaf(node.getValue());
+            } else {
+                int arity = null == node.getRightChild() ? 1 : 2;
+                ExpressionOperator operator = ExpressionOperator.of(node.getValue(), arity);
+                if (null == operator) {
+                    throw new IllegalArgumentException("unknown operator: " + node.getValue() + "/" + arity);
+                }
+                // 后序遍历保证操作数已经在栈顶(左右子节点是同一个节点时也是)，不够时说明遍历得到的序列有误
+                if (top < arity) throw new IllegalArgumentException("missing operand for " + node.getValue());
+                int r = arity == 2 ? ids[--top] : -1, l = ids[--top];
+                id = operation(operator, l, r);
+            }
+            if (top == ids.length) ids = Arrays.copyOf(ids, top * 2);
+            ids[top++] = id;
+        }
+
+        private int leaf(String value) {
+            if (value.isEmpty()) throw new IllegalArgumentException("empty operand");
+            if (Character.isJavaIdentifierStart(value.charAt(0))) {
+                Integer slot = slots.get(value);
+                if (null == slot) throw new IllegalArgumentException("unknown variable: " + value);
+                return intern(LEAF_VAR, -1, slot);
+            }
+            try {
+                return constant(Double.parseDouble(value));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad operand: " + value, e);
+            }
+        }
+
+        private int constant(double value) {
+            // Double.equals按位比较，0.0和-0.0是不同的常量
+            Integer index = constantIndex.get(value);
+            if (null == index) {
+                index = constantCount;
+                if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+                constants[constantCount++] = value;
+                constantIndex.put(value, index);
+            }
+            return intern(LEAF_CONST, -1, index);
+        }
+
+        private int operation(ExpressionOperator operator, int l, int r) {
+            boolean lc = op[l] == LEAF_CONST, rc = r >= 0 && op[r] == LEAF_CONST;
+            if (lc && (r < 0 || rc)) {
+                return constant(operator.apply(constants[right[l]], r < 0 ? 0 : constants[right[r]]));
+            }
+            // 只做结果与x逐位相同的化简
+            if (rc) {
+                double c = constants[right[r]];
+                if ((operator == ExpressionOperator.MUL || operator == ExpressionOperator.DIV) && c == 1) return l;
+                if (operator == ExpressionOperator.SUB && Double.doubleToRawLongBits(c) == 0) return l;
+            }
+            if (lc && operator == ExpressionOperator.MUL && constants[right[l]] == 1) return r;
+
+            if ((operator == ExpressionOperator.ADD || operator == ExpressionOperator.MUL) && l > r) {
+                int t = l;
+                l = r;
+                r = t;
+            }
+            return intern(operator.ordinal(), l, r);
+        }
+
+        // 运算符占5位(+2使叶子也是非负数)，两个操作数(+1使-1也是非负数)各占29位
+        private int intern(int operator, int l, int r) {
+            long key = ((long) (operator + 2) << 58) | ((long) (l + 1) << 29) | (r + 1);
+            Integer id = interned.get(key);
+            if (null != id) return id;
+
+            if (size == MAX_OPERAND) throw new IllegalArgumentException("expression too large");
+            if (size == op.length) {
+                op = Arrays.copyOf(op, size * 2);
+                left = Arrays.copyOf(left, size * 2);
+                right = Arrays.copyOf(right, size * 2);
+            }
+            op[size] = operator;
+            left[size] = l;
+            right[size] = r;
+            interned.put(key, size);
+            return size++;
+        }
+
+        private static boolean isLeaf(int operator) {
+            return operator < 0;
+        }
+
+        // ADD..DIV使用专门的算术指令，右操作数是叶子时可以合并
+        private static boolean isArithmetic(int operator) {
+            return operator <= ExpressionOperator.DIV.ordinal();
+        }
+
+        /**
+         * 从top开始按"左、右、运算"的顺序生成字节码，引用多次的运算节点第二次起读临时槽。
+         * 用一个int数组栈代替递归：非负数表示待生成的节点，~id表示左右操作数已经生成、该生成运算指令了
+         */
+        CompiledExpression emit(int top) {
+            // 每个运算节点被引用的次数，决定是否需要临时槽
+            int[] refs = new int[size];
+            for (int id = 0; id < size; id++) {
+                if (!isLeaf(op[id])) {
+                    refs[left[id]]++;
+                    if (right[id] >= 0) refs[right[id]]++;
+                }
+            }
+            int[] slot = new int[size];
+            Arrays.fill(slot, -1);
+            boolean[] done = new boolean[size];
+
+            int[] out = new int[16];
+            int pc = 0, depth = 0, maxDepth = 0, temps = 0;
+
+            int[] work = new int[16];
+            int sp = 0;
+            work[sp++] = top;
+            while (sp > 0) {
+                int id = work[--sp];
+                int ins;
+                if (id < 0) {
+                    id = ~id;
+                    int r = right[id];
+                    if (r < 0) {
+                        ins = CALL1 | op[id] << OPERAND_SHIFT;
+                    } else if (!isArithmetic(op[id])) {
+                        ins = CALL2 | op[id] << OPERAND_SHIFT;
+                        depth--;
+                    } else if (isLeaf(op[r])) {
+                        ins = fused(op[id], r);
+                    } else {
+                        ins = ADD + op[id];
+                        depth--;
+                    }
+                    if (refs[id] > 1) {
+                        slot[id] = temps++;
+                        out = append(out, pc++, ins);
+                        ins = TEE | slot[id] << OPERAND_SHIFT;
+                    }
+                    done[id] = true;
+                } else if (done[id]) {
+                    ins = LOAD_TMP | slot[id] << OPERAND_SHIFT;
+                    maxDepth = Math.max(maxDepth, ++depth);
+                } else if (isLeaf(op[id])) {
+                    ins = (op[id] == LEAF_CONST ? CONST : VAR) | right[id] << OPERAND_SHIFT;
+                    maxDepth = Math.max(maxDepth, ++depth);
+                } else {
+                    if (sp + 3 > work.length) work = Arrays.copyOf(work, work.length * 2);
+                    work[sp++] = ~id;
+                    // 算术运算的右操作数是叶子时合并进运算指令，不单独生成
+                    int r = right[id];
+                    if (r >= 0 && !(isArithmetic(op[id]) && isLeaf(op[r]))) work[sp++] = r;
+                    work[sp++] = left[id];
+                    continue;
+                }
+                out = append(out, pc++, ins);
+            }
+
+            double[] c = Arrays.copyOf(constants, constantCount);
+            return new CompiledExpression(Arrays.copyOf(out, pc), c, variables, Math.max(1, maxDepth), temps);
+        }
+
+        private int fused(int operator, int leaf) {
+            int base = op[leaf] == LEAF_CONST ? ADD_CONST : ADD_VAR;
+            return (base + operator) | right[leaf] << OPERAND_SHIFT;
+        }
+
+        private static int[] append(int[] out, int pc, int ins) {
+            if (pc == out.length) out = Arrays.copyOf(out, pc * 2);
+            out[pc] = ins;
+            return out;
+        }
+    }
+    // =====================================================
+
+    /**
+     * 反汇编，每行一条指令
+     */
+    @Override
+    public String toString() {
+        String[] names = {"CONST", "VAR", "LOAD_TMP", "TEE", "ADD", "SUB", "MUL", "DIV",
+                "ADD_VAR", "SUB_VAR", "MUL_VAR", "DIV_VAR", "ADD_CONST", "SUB_CONST", "MUL_CONST", "DIV_CONST",
+                "CALL1", "CALL2"};
+        StringBuilder sb = new StringBuilder();
+        for (int ins : code) {
+            int opcode = ins & OPCODE_MASK, operand = ins >>> OPERAND_SHIFT;
+            sb.append(names[opcode]);
+            if (opcode == CALL1 || opcode == CALL2) {
+                sb.append(' ').append(ExpressionOperator.valueOf(operand).name());
+            } else if (opcode == CONST || (opcode >= ADD_CONST && opcode <= DIV_CONST)) {
+                sb.append(' ').append(constants[operand]);
+            } else if (opcode == VAR || (opcode >= ADD_VAR && opcode <= DIV_VAR)) {
+                sb.append(' ').append(variables[operand]);
+            } else if (opcode == LOAD_TMP || opcode == TEE) {
+                sb.append(" t").append(operand);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,398 @@
+package com.jr.test.algorithms.trees;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 线程安全的有序Map：乐观加锁的跳表(lazy skip list，Herlihy等)。
+ * <p>
+ * 1. 查找不加锁也不重试：只沿volatile的next指针前进，找到key后检查节点已完全链接且没有被标记删除，是wait-free的；
+ * 2. 插入：先不加锁地找到每一层的前驱和后继，再只锁住这些前驱并验证它们没有被删除、仍然指向原来的后继，
+ *    验证失败时释放锁重新查找；从第0层开始向上链接，全部链接后才设置fullyLinked，对查找可见；
+ * 3. 删除：先锁住并标记(marked)被删除的节点，这一刻即为删除的线性化点，再锁住各层前驱从上到下摘除；
+ *    锁总是按key从大到小的顺序获取(被删除节点、低层前驱、高层前驱)，不会死锁；
+ *    每个节点的锁只是一个int字段上的CAS自旋锁，相邻几层的前驱相同时只锁一次，不需要可重入；
+ * 4. 区间遍历沿第0层前进，跳过已标记或未链接完成的节点，是弱一致的：不会抛出ConcurrentModificationException，
+ *    不会重复返回同一个key，key严格递增，但可能看不到遍历开始之后的插入/删除。
+ * <p>
+ * 不允许null键和null值(null表示不存在)。size()由LongAdder维护，并发修改时只是近似值。
+ */
+public class ConcurrentSkipList<K, V> {
+
+    // 每层以1/4的概率上升，16层足够容纳4^16个节点
+    private static final int MAX_LEVEL = 16;
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> head, tail;
+    private final LongAdder size = new LongAdder();
+
+    // 已插入节点的最高层，只增不减；查找从这一层开始，不用每次都经过全部MAX_LEVEL层
+    private volatile int maxLevel;
+
+    public ConcurrentSkipList() {
+        this(null);
+    }
+
+    public ConcurrentSkipList(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        this.tail = new Node<>(null, null, MAX_LEVEL - 1);
+        this.head = new Node<>(null, null, MAX_LEVEL - 1);
+        for (int level = 0; level < MAX_LEVEL; level++) {
+            head.next.set(level, tail);
+        }
+        head.fullyLinked = tail.fullyLinked = true;
+    }
+
+    public int size() {
+        long n = size.sum();
+        return n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(0, n);
+    }
+
+    public boolean isEmpty() {
+        return firstNode() == tail;
+    }
+
+    // =====================================================
+    // 查找
+    @SuppressWarnings("unchecked")
+    private int compare(K key, Node<K, V> node) {
+        if (node == tail) return -1;
+        return null == comparator
+                ? ((Comparable<? super K>) key).compareTo(node.key)
+                : comparator.compare(key, node.key);
+    }
+
+    public V get(K key) {
+        if (null == key) throw new NullPointerException();
+
+        Node<K, V> pred = head;
+        for (int level = maxLevel; level >= 0; level--) {
+            Node<K, V> curr = pred.next.get(level);
+            int i;
+            while ((i = compare(key, curr)) > 0) {
+                pred = curr;
+                curr = pred.next.get(level);
+            }
+            if (i == 0) return curr.fullyLinked && !curr.marked ? curr.value : null;
+        }
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        return null != get(key);
+    }
+
+    /**
+     * 不小于key的最小key，不存在时返回null
+     */
+    public K ceilingKey(K key) {
+        for (Node<K, V> node = ceilingNode(key); node != tail; node = node.next.get(0)) {
+            if (node.fullyLinked && !node.marked) return node.key;
+        }
+        return null;
+    }
+
+    // 第0层上第一个不小于key的节点(可能已被标记)。返回下降时比较过的curr，
+    // 不能再读一次pred.next，否则其它线程刚插入的更小的节点会被返回
+    private Node<K, V> ceilingNode(K key) {
+        Node<K, V> pred = head, curr = null;
+        for (int level = maxLevel; level >= 0; level--) {
+            curr = pred.next.get(level);
+            while (compare(key, curr) > 0) {
+                pred = curr;
+                curr = pred.next.get(level);
+            }
+        }
+        return curr;
+    }
+
+    private Node<K, V> firstNode() {
+        Node<K, V> node = head.next.get(0);
+        while (node != tail && (!node.fullyLinked || node.marked)) node = node.next.get(0);
+        return node;
+    }
+
+    // 记录每一层上key的前驱和后继，返回找到key的最高层，没有找到时返回-1
+    private int find(K key, Node<K, V>[] preds, Node<K, V>[] succs) {
+        int found = -1;
+        Node<K, V> pred = head;
+        for (int level = maxLevel; level >= 0; level--) {
+            Node<K, V> curr = pred.next.get(level);
+            int i;
+            while ((i = compare(key, curr)) > 0) {
+                pred = curr;
+                curr = pred.next.get(level);
+            }
+            if (found == -1 && i == 0) found = level;
+            preds[level] = pred;
+            succs[level] = curr;
+        }
+        return found;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 插入
+    /**
+     * 插入或更新，返回原来的值
+     */
+    public V put(K key, V value) {
+        return doPut(key, value, false);
+    }
+
+    /**
+     * key不存在时插入，返回原来的值(存在时不修改)
+     */
+    public V putIfAbsent(K key, V value) {
+        return doPut(key, value, true);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private V doPut(K key, V value, boolean onlyIfAbsent) {
+        if (null == key || null == value) throw new NullPointerException();
+
+        int topLevel = randomLevel();
+        if (topLevel > maxLevel) raiseMaxLevel(topLevel);
+        Node<K, V>[] preds = new Node[MAX_LEVEL], succs = new Node[MAX_LEVEL];
+        while (true) {
+            int found = find(key, preds, succs);
+            if (found != -1) {
+                Node<K, V> node = succs[found];
+                if (node.marked) continue;
+
+                // 其它线程正在链接这个节点，等它完成
+                while (!node.fullyLinked) Thread.yield();
+
+                node.lock();
+                try {
+                    if (node.marked) continue;
+                    V old = node.value;
+                    if (!onlyIfAbsent) node.value = value;
+                    return old;
+                } finally {
+                    node.unlock();
+                }
+            }
+
+            int locked = -1;
+            try {
+                boolean valid = true;
+                for (int level = 0; valid && level <= topLevel; level++) {
+                    Node<K, V> pred = preds[level], succ = succs[level];
+                    if (level == 0 || pred != preds[level - 1]) pred.lock();
+                    locked = level;
+                    valid = !pred.marked && !succ.marked && pred.next.get(level) == succ;
+                }
+                if (!valid) continue;
+
+                Node<K, V> node = new Node<>(key, value, topLevel);
+                for (int level = 0; level <= topLevel; level++) {
+                    node.next.set(level, succs[level]);
+                }
+                for (int level = 0; level <= topLevel; level++) {
+                    preds[level].next.set(level, node);
+                }
+                node.fullyLinked = true;
+                size.increment();
+                return null;
+            } finally {
+                unlock(preds, locked);
+            }
+        }
+    }
+
+    private synchronized void raiseMaxLevel(int level) {
+        if (level > maxLevel) maxLevel = level;
+    }
+
+    // 释放preds[0, locked]中的锁，相邻层相同的前驱只锁过一次
+    private static void unlock(Node<?, ?>[] preds, int locked) {
+        for (int level = 0; level <= locked; level++) {
+            if (level == 0 || preds[level] != preds[level - 1]) preds[level].unlock();
+        }
+    }
+
+    private static int randomLevel() {
+        int r = ThreadLocalRandom.current().nextInt();
+        int level = Integer.numberOfTrailingZeros(r) >>> 1;
+        return Math.min(level, MAX_LEVEL - 1);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 删除
+    /**
+     * 删除key，返回原来的值
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public V remove(K key) {
+        if (null == key) throw new NullPointerException();
+
+        Node<K, V>[] preds = new Node[MAX_LEVEL], succs = new Node[MAX_LEVEL];
+        Node<K, V> victim = null;
+        boolean marked = false;
+        while (true) {
+            int found = find(key, preds, succs);
+            if (!marked) {
+                if (found == -1) return null;
+                victim = succs[found];
+                // 只删除完全链接、在最高层被找到的节点，否则它还在插入过程中，视为不存在
+                if (!victim.fullyLinked || victim.topLevel != found || victim.marked) return null;
+
+                victim.lock();
+                if (victim.marked) {
+                    victim.unlock();
+                    return null;
+                }
+                victim.marked = true;
+                marked = true;
+            }
+
+            int locked = -1;
+            try {
+                boolean valid = true;
+                for (int level = 0; valid && level <= victim.topLevel; level++) {
+                    Node<K, V> pred = preds[level];
+                    if (level == 0 || pred != preds[level - 1]) pred.lock();
+                    locked = level;
+                    valid = !pred.marked && pred.next.get(level) == victim;
+                }
+                if (!valid) continue;
+
+                for (int level = victim.topLevel; level >= 0; level--) {
+                    preds[level].next.set(level, victim.next.get(level));
+                }
+                size.decrement();
+                V old = victim.value;
+                victim.unlock();
+                return old;
+            } finally {
+                unlock(preds, locked);
+            }
+        }
+    }
+    // =====================================================
+
+    // =====================================================
+    // 区间遍历
+    /**
+     * 按顺序访问[from, to]中的键值对(弱一致)，from/to为null表示不限，返回访问的个数
+     */
+    public int scan(K from, K to, BiConsumer<? super K, ? super V> visitor) {
+        int count = 0;
+        for (Iterator<Map.Entry<K, V>> it = iterator(from, to); it.hasNext(); ) {
+            Map.Entry<K, V> e = it.next();
+            visitor.accept(e.getKey(), e.getValue());
+            count++;
+        }
+        return count;
+    }
+
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return iterator(null, null);
+    }
+
+    /**
+     * [from, to]的弱一致迭代器，from/to为null表示不限；remove()删除上一个返回的key
+     */
+    public Iterator<Map.Entry<K, V>> iterator(K from, K to) {
+        return new RangeIterator(null == from ? head.next.get(0) : ceilingNode(from), from, to);
+    }
+
+    private final class RangeIterator implements Iterator<Map.Entry<K, V>> {
+
+        private final K from, to;
+        private Node<K, V> next;
+        private V nextValue;
+        private K lastReturned;
+
+        RangeIterator(Node<K, V> start, K from, K to) {
+            this.from = from;
+            this.to = to;
+            this.next = start;
+            advance();
+        }
+
+        // 从next开始找到第一个有效的节点，并读取当时的值
+        private void advance() {
+            for (Node<K, V> node = next; node != tail; node = node.next.get(0)) {
+                if (null != to && compare(to, node) < 0) break;
+                // 起点之后并发插入的节点也可能小于from
+                if (null != from && compare(from, node) > 0) continue;
+
+                V value = node.value;
+                if (node.fullyLinked && !node.marked) {
+                    next = node;
+                    nextValue = value;
+                    return;
+                }
+            }
+            next = null;
+            nextValue = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return null != next;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            Node<K, V> node = next;
+            if (null == node) throw new NoSuchElementException();
+
+            Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<>(node.key, nextValue);
+            lastReturned = node.key;
+            next = node.next.get(0);
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (null == lastReturned) throw new IllegalStateException();
+            ConcurrentSkipList.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+    // =====================================================
+
+    private static final class Node<K, V> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<Node> LOCK = AtomicIntegerFieldUpdater.newUpdater(Node.class, "locked");
+
+        final K key;
+        volatile V value;
+        final int topLevel;
+        final AtomicReferenceArray<Node<K, V>> next;
+        volatile boolean marked;
+        volatile boolean fullyLinked;
+        private volatile int locked;
+
+        Node(K key, V value, int topLevel) {
+            this.key = key;
+            this.value = value;
+            this.topLevel = topLevel;
+            this.next = new AtomicReferenceArray<>(topLevel + 1);
+        }
+
+        // 持有锁的时间只有几次指针赋值，竞争时让出CPU而不是阻塞
+        void lock() {
+            while (!LOCK.compareAndSet(this, 0, 1)) Thread.yield();
+        }
+
+        void unlock() {
+            locked = 0;
+        }
+    }
+
+}
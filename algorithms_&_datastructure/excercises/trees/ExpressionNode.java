@@ -0,0 +1,361 @@
+package com.jr.test.algorithms.trees;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 不可变的表达式节点，只能由Factory创建。Factory做hash consing：结构相同的子表达式在同一个Factory中只有一个节点，
+ * 所有公式共享。
+ * <p>
+ * 1. 同一个Factory创建的两个节点结构相同当且仅当是同一个对象，所以equals就是==，o(1)；
+ *    hashCode是按结构计算的，创建时缓存，不同Factory中结构相同的节点hashCode也相同；
+ * 2. 每个节点有一个Factory内的连续编号id，子节点的id总是小于父节点，可以用数组按id保存每个节点的计算结果，
+ *    Memo就是这样对一批公式做记忆化求值的：变量取值不变时每个不同的子表达式只计算一次；
+ * 3. 叶子的文本也只保存一份，数字在创建时就解析好。
+ * <p>
+ * 运算符和操作数的约定与TreeNode相同(见ExpressionOperator)，一元运算的right为null。
+ */
+public final class ExpressionNode {
+
+    private final ExpressionOperator operator;
+    private final String text;
+    private final ExpressionNode left, right;
+    private final double constant;
+    private final boolean isConstant;
+    private final int id;
+    private final int hash;
+
+    private ExpressionNode(ExpressionOperator operator, String text, ExpressionNode left, ExpressionNode right,
+                           double constant, boolean isConstant, int id, int hash) {
+        this.operator = operator;
+        this.text = text;
+        this.left = left;
+        this.right = right;
+        this.constant = constant;
+        this.isConstant = isConstant;
+        this.id = id;
+        this.hash = hash;
+    }
+
+    public boolean isLeaf() {
+        return null == operator;
+    }
+
+    /**
+     * 数字叶子
+     */
+    public boolean isConstant() {
+        return isConstant;
+    }
+
+    public boolean isVariable() {
+        return null == operator && !isConstant;
+    }
+
+    /**
+     * 叶子返回null
+     */
+    public ExpressionOperator operator() {
+        return operator;
+    }
+
+    /**
+     * 叶子的文本(数字或变量名)，运算节点的symbol
+     */
+    public String text() {
+        return text;
+    }
+
+    public ExpressionNode left() {
+        return left;
+    }
+
+    public ExpressionNode right() {
+        return right;
+    }
+
+    public double constant() {
+        return constant;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * 后缀形式，记号之间用空格分隔，取负写作neg。共享的子表达式每次出现都会展开，只用于调试
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        ExpressionNode[] stack = new ExpressionNode[16];
+        boolean[] expanded = new boolean[16];
+        int top = 0;
+        stack[top++] = this;
+        while (top > 0) {
+            ExpressionNode node = stack[top - 1];
+            if (node.isLeaf() || expanded[top - 1]) {
+                top--;
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(node.operator == ExpressionOperator.NEG ? "neg" : node.text);
+                continue;
+            }
+            expanded[top - 1] = true;
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                expanded = Arrays.copyOf(expanded, stack.length);
+            }
+            if (null != node.right) {
+                stack[top] = node.right;
+                expanded[top++] = false;
+            }
+            stack[top] = node.left;
+            expanded[top++] = false;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 创建并共享节点。用开放寻址的哈希表保存所有节点，查找时直接比较运算符和子节点的引用，不创建临时的key对象。
+     * 节点在Factory被丢弃之前不会被回收。不是线程安全的。
+     */
+    public static final class Factory {
+
+        private ExpressionNode[] table = new ExpressionNode[1024];
+        private int size;
+
+        /**
+         * 已经创建的不同节点的个数，也是下一个节点的id
+         */
+        public int size() {
+            return size;
+        }
+
+        public ExpressionNode leaf(String text) {
+            if (text.isEmpty()) throw new IllegalArgumentException("empty operand");
+            int h = text.hashCode();
+            int mask = table.length - 1;
+            for (int i = spread(h) & mask; ; i = (i + 1) & mask) {
+                ExpressionNode node = table[i];
+                if (null == node) break;
+                if (node.hash == h && null == node.operator && node.text.equals(text)) return node;
+            }
+
+            double constant = Double.NaN;
+            boolean isConstant = !Character.isJavaIdentifierStart(text.charAt(0));
+            if (isConstant) {
+                try {
+                    constant = Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("bad operand: " + text, e);
+                }
+            }
+            return add(new ExpressionNode(null, text, null, null, constant, isConstant, size, h));
+        }
+
+        /**
+         * 一元运算的right传null
+         */
+        public ExpressionNode node(ExpressionOperator operator, ExpressionNode left, ExpressionNode right) {
+            if (null == left || (null == right) != (operator.arity == 1)) {
+                throw new IllegalArgumentException(operator + " expects " + operator.arity + " operand(s)");
+            }
+            int h = (31 * (operator.ordinal() + 1) + left.hash) * 31 + (null == right ? 0 : right.hash);
+            int mask = table.length - 1;
+            for (int i = spread(h) & mask; ; i = (i + 1) & mask) {
+                ExpressionNode node = table[i];
+                if (null == node) break;
+                if (node.hash == h && node.operator == operator && node.left == left && node.right == right) {
+                    return node;
+                }
+            }
+            return add(new ExpressionNode(operator, operator.symbol, left, right, Double.NaN, false, size, h));
+        }
+
+        private ExpressionNode add(ExpressionNode node) {
+            if (size == Integer.MAX_VALUE) throw new IllegalStateException("too many nodes");
+            // 装载因子不超过1/2
+            if (2 * (size + 1) > table.length) resize();
+            int mask = table.length - 1;
+            int i = spread(node.hash) & mask;
+            while (null != table[i]) i = (i + 1) & mask;
+            table[i] = node;
+            size++;
+            return node;
+        }
+
+        private void resize() {
+            ExpressionNode[] old = table;
+            table = new ExpressionNode[old.length * 2];
+            int mask = table.length - 1;
+            for (ExpressionNode node : old) {
+                if (null == node) continue;
+                int i = spread(node.hash) & mask;
+                while (null != table[i]) i = (i + 1) & mask;
+                table[i] = node;
+            }
+        }
+
+        private static int spread(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * 与ExpressionTreeBuilder.build相同的后缀表达式，直接生成共享的节点
+         */
+        public ExpressionNode build(String[] postfixExpression) {
+            ExpressionNode[] stack = new ExpressionNode[postfixExpression.length];
+            int top = 0;
+            for (String s : postfixExpression) {
+                if (ExpressionTreeBuilder.isOperator(s)) {
+                    if (top < 2) throw new IllegalArgumentException("missing operand for " + s);
+                    ExpressionNode right = stack[--top], left = stack[--top];
+                    stack[top++] = node(ExpressionOperator.of(s, 2), left, right);
+                } else {
+                    stack[top++] = leaf(s);
+                }
+            }
+            if (top != 1) throw new IllegalArgumentException("malformed postfix expression");
+            return stack[0];
+        }
+
+        /**
+         * 把ExpressionTreeBuilder或ExpressionParser生成的树转换成共享的节点，非递归
+         */
+        public ExpressionNode intern(TreeNode root) {
+            ExpressionNode[] stack = new ExpressionNode[16];
+            int top = 0;
+            for (Iterator<TreeNode> it = TreeTraveller.iterator(root, TreeTraveller.Order.POST); it.hasNext(); ) {
+                TreeNode tree = it.next();
+                ExpressionNode node;
+                if (null == tree.getLeftChild()) {
+                    if (null != tree.getRightChild()) {
+                        throw new IllegalArgumentException("missing left operand: " + tree.getValue());
+                    }
+                    node = leaf(tree.getValue());
+                } else {
+                    int arity = null == tree.getRightChild() ? 1 : 2;
+                    ExpressionOperator operator = ExpressionOperator.of(tree.getValue(), arity);
+                    if (null == operator) {
+                        throw new IllegalArgumentException("unknown operator: " + tree.getValue() + "/" + arity);
+                    }
+                    ExpressionNode right = arity == 2 ? stack[--top] : null;
+                    node = node(operator, stack[--top], right);
+                }
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = node;
+            }
+            return stack[0];
+        }
+
+        /**
+         * 对这个Factory中的公式做记忆化求值
+         */
+        public Memo memo(String... variables) {
+            return new Memo(this, variables);
+        }
+    }
+
+    /**
+     * 按节点id保存计算结果。bind设置一组新的变量取值，之后evaluate的各个公式共享已经算过的子表达式。
+     * 用版本号标记结果是否属于当前这组取值，bind不需要清空数组。不是线程安全的。
+     */
+    public static final class Memo {
+
+        private final Factory factory;
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        private double[] values = new double[0];
+        private int[] stamps = new int[0];
+        // 变量叶子对应的下标+1，0表示还没有查找过
+        private int[] leafSlots = new int[0];
+        private int generation;
+
+        private double[] vars;
+        private ExpressionNode[] stack = new ExpressionNode[16];
+
+        private Memo(Factory factory, String[] variables) {
+            this.factory = factory;
+            for (int i = 0; i < variables.length; i++) {
+                if (null != slots.put(variables[i], i)) {
+                    throw new IllegalArgumentException("duplicate variable: " + variables[i]);
+                }
+            }
+        }
+
+        /**
+         * vars[i]是第i个变量的值，之前的结果全部作废
+         */
+        public Memo bind(double[] vars) {
+            this.vars = vars;
+            if (++generation == 0) {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+            return this;
+        }
+
+        /**
+         * 已经计算过的节点直接返回结果，子节点先于父节点计算，用数组栈代替递归
+         */
+        public double evaluate(ExpressionNode root) {
+            if (null == vars) throw new IllegalStateException("bind variables first");
+            if (root.id >= stamps.length) grow();
+            final int gen = generation;
+            if (stamps[root.id] == gen) return values[root.id];
+
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                ExpressionNode node = stack[top - 1];
+                if (stamps[node.id] == gen) {
+                    top--;
+                    continue;
+                }
+                if (null == node.operator) {
+                    values[node.id] = node.isConstant ? node.constant : vars[slot(node)];
+                } else {
+                    ExpressionNode l = node.left, r = node.right;
+                    boolean ready = stamps[l.id] == gen && (null == r || stamps[r.id] == gen);
+                    if (!ready) {
+                        if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                        if (null != r && stamps[r.id] != gen) stack[top++] = r;
+                        if (stamps[l.id] != gen) stack[top++] = l;
+                        continue;
+                    }
+                    values[node.id] = node.operator.apply(values[l.id], null == r ? 0 : values[r.id]);
+                }
+                stamps[node.id] = gen;
+                top--;
+            }
+            return values[root.id];
+        }
+
+        private int slot(ExpressionNode leaf) {
+            int slot = leafSlots[leaf.id];
+            if (slot == 0) {
+                Integer index = slots.get(leaf.text);
+                if (null == index) throw new IllegalArgumentException("unknown variable: " + leaf.text);
+                slot = leafSlots[leaf.id] = index + 1;
+            }
+            return slot - 1;
+        }
+
+        // Factory在Memo创建之后还可以继续创建节点
+        private void grow() {
+            int n = Math.max(factory.size(), 16);
+            values = Arrays.copyOf(values, n);
+            stamps = Arrays.copyOf(stamps, n);
+            leafSlots = Arrays.copyOf(leafSlots, n);
+        }
+    }
+
+}
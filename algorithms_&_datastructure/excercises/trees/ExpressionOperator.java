@@ -0,0 +1,129 @@
+package com.jr.test.algorithms.trees;
+
+/**
+ * 表达式树中的运算符和函数。树中运算节点的value是symbol，操作数是子节点：
+ * 二元运算左右两个子节点都有，一元运算(取负和单参数函数)只有左子节点。
+ * 减号和取负的symbol都是"-"，靠子节点的个数区分。
+ */
+public enum ExpressionOperator {
+
+    // 前四个的顺序与CompiledExpression的算术指令一致
+    ADD("+", 2),
+    SUB("-", 2),
+    MUL("*", 2),
+    DIV("/", 2),
+    POW("^", 2),
+    NEG("-", 1),
+
+    ABS("abs", 1),
+    SQRT("sqrt", 1),
+    EXP("exp", 1),
+    LOG("log", 1),
+    SIN("sin", 1),
+    COS("cos", 1),
+    TAN("tan", 1),
+    FLOOR("floor", 1),
+    CEIL("ceil", 1),
+    MIN("min", 2),
+    MAX("max", 2);
+
+    private static final ExpressionOperator[] VALUES = values();
+
+    public final String symbol;
+    public final int arity;
+
+    ExpressionOperator(String symbol, int arity) {
+        this.symbol = symbol;
+        this.arity = arity;
+    }
+
+    /**
+     * 一元运算忽略b
+     */
+    public double apply(double a, double b) {
+        switch (this) {
+            case ADD:
+                return a + b;
+            case SUB:
+                return a - b;
+            case MUL:
+                return a * b;
+            case DIV:
+                return a / b;
+            case POW:
+                return Math.pow(a, b);
+            case NEG:
+                return -a;
+            case ABS:
+                return Math.abs(a);
+            case SQRT:
+                return Math.sqrt(a);
+            case EXP:
+                return Math.exp(a);
+            case LOG:
+                return Math.log(a);
+            case SIN:
+                return Math.sin(a);
+            case COS:
+                return Math.cos(a);
+            case TAN:
+                return Math.tan(a);
+            case FLOOR:
+                return Math.floor(a);
+            case CEIL:
+                return Math.ceil(a);
+            case MIN:
+                return Math.min(a, b);
+            default:
+                return Math.max(a, b);
+        }
+    }
+
+    public boolean isFunction() {
+        return Character.isLetter(symbol.charAt(0));
+    }
+
+    /**
+     * 按symbol和操作数个数查找，不存在时返回null
+     */
+    public static ExpressionOperator of(String symbol, int arity) {
+        if (symbol.length() == 1) {
+            switch (symbol.charAt(0)) {
+                case '+':
+                    return arity == 2 ? ADD : null;
+                case '-':
+                    return arity == 2 ? SUB : arity == 1 ? NEG : null;
+                case '*':
+                    return arity == 2 ? MUL : null;
+                case '/':
+                    return arity == 2 ? DIV : null;
+                case '^':
+                    return arity == 2 ? POW : null;
+                default:
+                    return null;
+            }
+        }
+        for (ExpressionOperator op : VALUES) {
+            if (op.arity == arity && op.symbol.equals(symbol)) return op;
+        }
+        return null;
+    }
+
+    /**
+     * 按名字查找函数，名字是s中[start, end)的部分，不创建字符串。不存在时返回null
+     */
+    public static ExpressionOperator function(CharSequence s, int start, int end) {
+        for (ExpressionOperator op : VALUES) {
+            if (!op.isFunction() || op.symbol.length() != end - start) continue;
+            int i = 0;
+            while (i < end - start && op.symbol.charAt(i) == s.charAt(start + i)) i++;
+            if (i == end - start) return op;
+        }
+        return null;
+    }
+
+    static ExpressionOperator valueOf(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+}
@@ -0,0 +1,223 @@
+package com.jr.test.algorithms.trees;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * 中缀表达式解析器(调度场算法)，一遍扫描直接生成ExpressionTreeBuilder格式的表达式树：
+ * <p>
+ * 1. 优先级从低到高：+ -，* /，一元-(一元+被忽略)，^；^是右结合的，-a^b = -(a^b)，a^-b = a^(-b)；
+ * 2. 函数调用 name(arg, ...)，函数及其参数个数见ExpressionOperator；
+ * 3. 运算符栈和操作数栈都是数组，不递归，嵌套再深也不会栈溢出；
+ * 4. 运算节点的value直接使用ExpressionOperator.symbol；数字和变量名经过一个小的缓存，
+ *    文本相同时共享同一个String(公式中同一个变量通常出现多次)，缓存在多次解析之间保留。
+ * <p>
+ * 解析器实例可以反复使用(栈只在第一次解析时分配和扩容)，不是线程安全的。
+ * 格式错误时抛出IllegalArgumentException，消息中带有出错的位置。
+ */
+public final class ExpressionParser {
+
+    // 运算符栈中的标记：非负数是ExpressionOperator的编号，PAREN是左括号，CALL - ordinal是函数调用的左括号
+    private static final int PAREN = -1, CALL = -2;
+
+    private static final int LEAF_CACHE = 256;
+
+    private final ExpressionTokenizer tokenizer = new ExpressionTokenizer();
+
+    private TreeNode[] operands = new TreeNode[16];
+    private int operandTop;
+
+    private int[] operators = new int[16];
+    private int operatorTop;
+
+    // 每层函数调用已经读到的参数个数
+    private int[] arguments = new int[8];
+    private int callTop;
+
+    // 按文本的hash直接映射，冲突时覆盖
+    private final String[] leaves = new String[LEAF_CACHE];
+
+    public TreeNode parse(CharSequence expression) {
+        return parse(expression, 0, expression.length());
+    }
+
+    /**
+     * char[]通过CharBuffer包装，不复制
+     */
+    public TreeNode parse(char[] expression, int offset, int length) {
+        return parse(CharBuffer.wrap(expression, offset, length));
+    }
+
+    public TreeNode parse(CharSequence expression, int from, int to) {
+        tokenizer.reset(expression, from, to);
+        operandTop = operatorTop = callTop = 0;
+        try {
+            return parse();
+        } finally {
+            // 不持有上一次解析的节点，[operandTop, length)已经在归约时清空
+            Arrays.fill(operands, 0, operandTop, null);
+        }
+    }
+
+    private TreeNode parse() {
+        ExpressionTokenizer t = tokenizer;
+        // true：下一个记号应该是操作数(数字、变量、函数、左括号或一元运算符)
+        boolean expectOperand = true;
+        while (true) {
+            int type = t.next();
+            switch (type) {
+                case ExpressionTokenizer.NUMBER:
+                case ExpressionTokenizer.IDENTIFIER:
+                    if (!expectOperand) throw t.error("missing operator", t.start());
+                    if (type == ExpressionTokenizer.IDENTIFIER && t.peek() == '(') {
+                        ExpressionOperator function = ExpressionOperator.function(t.input(), t.start(), t.end());
+                        if (null == function) throw t.error("unknown function " + t.text(), t.start());
+                        t.next();
+                        pushOperator(CALL - function.ordinal());
+                        pushCall();
+                    } else {
+                        pushOperand(new TreeNode(leaf(t.input(), t.start(), t.end()), null, null));
+                        expectOperand = false;
+                    }
+                    break;
+
+                case ExpressionTokenizer.OPERATOR:
+                    char c = t.operator();
+                    if (expectOperand) {
+                        if (c == '-') {
+                            pushOperator(ExpressionOperator.NEG.ordinal());
+                        } else if (c != '+') {
+                            throw t.error("missing operand before '" + c + "'", t.start());
+                        }
+                    } else {
+                        ExpressionOperator operator = binary(c);
+                        int p = precedence(operator);
+                        while (operatorTop > 0 && operators[operatorTop - 1] >= 0) {
+                            int q = precedence(ExpressionOperator.valueOf(operators[operatorTop - 1]));
+                            if (q < p || (q == p && operator == ExpressionOperator.POW)) break;
+                            reduce();
+                        }
+                        pushOperator(operator.ordinal());
+                        expectOperand = true;
+                    }
+                    break;
+
+                case ExpressionTokenizer.LEFT_PAREN:
+                    if (!expectOperand) throw t.error("missing operator", t.start());
+                    pushOperator(PAREN);
+                    break;
+
+                case ExpressionTokenizer.COMMA:
+                    if (expectOperand) throw t.error("missing operand", t.start());
+                    reduceToParen();
+                    if (operatorTop == 0 || operators[operatorTop - 1] == PAREN) {
+                        throw t.error("',' outside function call", t.start());
+                    }
+                    arguments[callTop - 1]++;
+                    expectOperand = true;
+                    break;
+
+                case ExpressionTokenizer.RIGHT_PAREN:
+                    if (expectOperand) throw t.error("missing operand", t.start());
+                    reduceToParen();
+                    if (operatorTop == 0) throw t.error("unbalanced ')'", t.start());
+                    int marker = operators[--operatorTop];
+                    if (marker != PAREN) {
+                        ExpressionOperator function = ExpressionOperator.valueOf(CALL - marker);
+                        int n = arguments[--callTop];
+                        if (n != function.arity) {
+                            throw t.error(function.symbol + " expects " + function.arity + " argument(s)", t.start());
+                        }
+                        node(function);
+                    }
+                    break;
+
+                default:
+                    if (expectOperand) throw t.error("missing operand", t.start());
+                    reduceToParen();
+                    if (operatorTop > 0) throw t.error("unbalanced '('", t.start());
+                    return operands[0];
+            }
+        }
+    }
+
+    private String leaf(CharSequence s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + s.charAt(i);
+        int slot = (h ^ (h >>> 8)) & (LEAF_CACHE - 1);
+
+        String cached = leaves[slot];
+        if (null != cached && cached.length() == to - from) {
+            int i = 0;
+            while (i < to - from && cached.charAt(i) == s.charAt(from + i)) i++;
+            if (i == to - from) return cached;
+        }
+        return leaves[slot] = s.subSequence(from, to).toString();
+    }
+
+    private static ExpressionOperator binary(char c) {
+        switch (c) {
+            case '+':
+                return ExpressionOperator.ADD;
+            case '-':
+                return ExpressionOperator.SUB;
+            case '*':
+                return ExpressionOperator.MUL;
+            case '/':
+                return ExpressionOperator.DIV;
+            default:
+                return ExpressionOperator.POW;
+        }
+    }
+
+    private static int precedence(ExpressionOperator operator) {
+        switch (operator) {
+            case ADD:
+            case SUB:
+                return 1;
+            case MUL:
+            case DIV:
+                return 2;
+            case NEG:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    // 归约栈顶的运算符，直到遇到左括号(包括函数调用的左括号)或栈空
+    private void reduceToParen() {
+        while (operatorTop > 0 && operators[operatorTop - 1] >= 0) reduce();
+    }
+
+    private void reduce() {
+        node(ExpressionOperator.valueOf(operators[--operatorTop]));
+    }
+
+    // 用栈顶的arity个操作数生成运算节点
+    private void node(ExpressionOperator operator) {
+        TreeNode right = null;
+        if (operator.arity == 2) {
+            right = operands[--operandTop];
+            operands[operandTop] = null;
+        }
+        TreeNode left = operands[--operandTop];
+        operands[operandTop++] = new TreeNode(operator.symbol, left, right);
+    }
+
+    private void pushOperand(TreeNode node) {
+        if (operandTop == operands.length) operands = Arrays.copyOf(operands, operandTop * 2);
+        operands[operandTop++] = node;
+    }
+
+    private void pushOperator(int operator) {
+        if (operatorTop == operators.length) operators = Arrays.copyOf(operators, operatorTop * 2);
+        operators[operatorTop++] = operator;
+    }
+
+    private void pushCall() {
+        if (callTop == arguments.length) arguments = Arrays.copyOf(arguments, callTop * 2);
+        arguments[callTop++] = 1;
+    }
+
+}
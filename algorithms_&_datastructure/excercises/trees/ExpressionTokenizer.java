@@ -0,0 +1,157 @@
+package com.jr.test.algorithms.trees;
+
+/**
+ * 中缀表达式的词法分析，直接在输入的CharSequence上扫描，不复制字符：
+ * next()返回下一个记号的类型，记号在输入中的位置是[start(), end())，需要字符串时才调用text()。
+ * <p>
+ * 数字：digits[.digits][(e|E)[+|-]digits]，也可以以小数点开头；标识符：字母或_开头，后面是字母、数字或_；
+ * 运算符：+ - * / ^；另外还有括号和逗号，空白字符被跳过。
+ * 同一个实例可以用reset反复使用。
+ */
+public final class ExpressionTokenizer {
+
+    public static final int END = 0, NUMBER = 1, IDENTIFIER = 2, OPERATOR = 3;
+    public static final int LEFT_PAREN = 4, RIGHT_PAREN = 5, COMMA = 6;
+
+    private CharSequence input;
+    private int pos, limit;
+    private int start, end;
+
+    public ExpressionTokenizer() {
+    }
+
+    public ExpressionTokenizer(CharSequence input) {
+        reset(input, 0, input.length());
+    }
+
+    /**
+     * 扫描input中[from, to)的部分
+     */
+    public ExpressionTokenizer reset(CharSequence input, int from, int to) {
+        if (from < 0 || to > input.length() || from > to) throw new IndexOutOfBoundsException();
+        this.input = input;
+        this.pos = from;
+        this.limit = to;
+        this.start = this.end = from;
+        return this;
+    }
+
+    public int next() {
+        skipWhitespace();
+        start = pos;
+        if (pos == limit) {
+            end = pos;
+            return END;
+        }
+
+        char c = input.charAt(pos);
+        int type;
+        if (isDigit(c) || (c == '.' && pos + 1 < limit && isDigit(input.charAt(pos + 1)))) {
+            scanNumber();
+            type = NUMBER;
+        } else if (isIdentifierStart(c)) {
+            pos++;
+            while (pos < limit && isIdentifierPart(input.charAt(pos))) pos++;
+            type = IDENTIFIER;
+        } else {
+            pos++;
+            switch (c) {
+                case '+':
+                case '-':
+                case '*':
+                case '/':
+                case '^':
+                    type = OPERATOR;
+                    break;
+                case '(':
+                    type = LEFT_PAREN;
+                    break;
+                case ')':
+                    type = RIGHT_PAREN;
+                    break;
+                case ',':
+                    type = COMMA;
+                    break;
+                default:
+                    throw error("unexpected character '" + c + "'", start);
+            }
+        }
+        end = pos;
+        return type;
+    }
+
+    private void scanNumber() {
+        while (pos < limit && isDigit(input.charAt(pos))) pos++;
+        if (pos < limit && input.charAt(pos) == '.') {
+            pos++;
+            while (pos < limit && isDigit(input.charAt(pos))) pos++;
+        }
+        if (pos < limit && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < limit && (input.charAt(pos) == '+' || input.charAt(pos) == '-')) pos++;
+            int digits = pos;
+            while (pos < limit && isDigit(input.charAt(pos))) pos++;
+            if (pos == digits) throw error("malformed number", start);
+        }
+        if (pos < limit && isIdentifierPart(input.charAt(pos))) throw error("malformed number", start);
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit && isWhitespace(input.charAt(pos))) pos++;
+    }
+
+    // 以下判断先处理ASCII字符，其它字符才调用Character的方法
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c < 128 ? c >= '\t' && c <= '\r' : Character.isWhitespace(c));
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        if (c < 128) return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+        return Character.isLetter(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        if (c < 128) return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        return Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * 下一个非空白字符，不移动位置，没有时返回-1
+     */
+    public int peek() {
+        skipWhitespace();
+        return pos < limit ? input.charAt(pos) : -1;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public CharSequence input() {
+        return input;
+    }
+
+    /**
+     * 当前记号是运算符时返回运算符字符
+     */
+    public char operator() {
+        return input.charAt(start);
+    }
+
+    public String text() {
+        return input.subSequence(start, end).toString();
+    }
+
+    IllegalArgumentException error(String message, int at) {
+        return new IllegalArgumentException(message + " at " + at + ": " + input.subSequence(0, limit));
+    }
+
+}
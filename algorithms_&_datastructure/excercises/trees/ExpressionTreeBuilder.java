@@ -1,6 +1,8 @@
 package com.jr.test.algorithms.trees;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
 
 public class ExpressionTreeBuilder {
 
@@ -11,24 +13,73 @@ public class ExpressionTreeBuilder {
         TreeTraveller.inOrder(tree);
         System.out.println();
         TreeTraveller.postOrder(tree);
+        System.out.println();
+
+        // (a + b) * (c * (d + e)) 编译后反复求值
+        CompiledExpression expr = CompiledExpression.compile(tree, "a", "b", "c", "d", "e");
+        System.out.print(expr);
+        System.out.println(expr.evaluate(new double[]{1, 2, 3, 4, 5}));
+
+        // 中缀表达式：优先级、一元运算和函数
+        TreeNode infix = new ExpressionParser().parse("-x^2 + max(x, 2 * y) / sqrt(4)");
+        TreeTraveller.postOrder(infix);
+        System.out.println();
+        System.out.println(CompiledExpression.compile(infix, "x", "y").evaluate(new double[]{3, 5}));
     }
 
+    /**
+     * 后缀表达式只支持+-*\/四个二元运算，中缀表达式(包括一元运算和函数)使用ExpressionParser
+     */
     public static TreeNode build(String[] postfixExpression) {
-        Stack<TreeNode> stack = new Stack<>();
+        // 栈的深度不超过表达式的长度
+        TreeNode[] stack = new TreeNode[postfixExpression.length];
+        int top = 0;
         for (String s : postfixExpression) {
             if (isOperator(s)) {
-                TreeNode right = stack.pop(), left = stack.pop();
-                TreeNode node = new TreeNode(s, left, right);
-                stack.push(node);
+                if (top < 2) throw new IllegalArgumentException("missing operand for " + s);
+                TreeNode right = stack[--top], left = stack[--top];
+                stack[top++] = new TreeNode(s, left, right);
+            } else {
+                stack[top++] = new TreeNode(s, null, null);
+            }
+        }
+        if (top != 1) throw new IllegalArgumentException("malformed postfix expression");
+        return stack[0];
+    }
+
+    /**
+     * 直接在树上求值，叶子是数字或者vars中的变量，运算见ExpressionOperator。每次求值都要遍历整棵树、查找变量，
+     * 同一个公式反复求值时应该使用CompiledExpression
+     */
+    public static double evaluate(TreeNode root, Map<String, Double> vars) {
+        double[] stack = new double[16];
+        int top = 0;
+        Iterator<TreeNode> it = TreeTraveller.iterator(root, TreeTraveller.Order.POST);
+        while (it.hasNext()) {
+            TreeNode node = it.next();
+            String s = node.getValue();
+            double value;
+            if (null == node.getLeftChild()) {
+                Double v = vars.get(s);
+                value = null != v ? v : Double.parseDouble(s);
             } else {
-                stack.push(new TreeNode(s, null, null));
+                int arity = null == node.getRightChild() ? 1 : 2;
+                ExpressionOperator operator = ExpressionOperator.of(s, arity);
+                if (null == operator) throw new IllegalArgumentException("unknown operator: " + s + "/" + arity);
+                double right = arity == 2 ? stack[--top] : 0, left = stack[--top];
+                value = operator.apply(left, right);
             }
+            if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+            stack[top++] = value;
         }
-        return stack.pop();
+        return stack[0];
     }
 
-    private static boolean isOperator(String oper) {
-        return oper.equals("+") || oper.equals("-") || oper.equals("*") || oper.equals("/");
+    // 只比较一个字符
+    static boolean isOperator(String oper) {
+        if (oper.length() != 1) return false;
+        char c = oper.charAt(0);
+        return c == '+' || c == '-' || c == '*' || c == '/';
     }
 
 }
@@ -0,0 +1,375 @@
+package com.jr.test.algorithms.trees;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * 节点保存在堆外内存(direct ByteBuffer)中的AVL树，long键、long值。
+ * <p>
+ * 1. 节点用int编号互相引用(0表示null)，编号的高位选择arena中的块，低位乘以NODE_SIZE为块内偏移；
+ *    每块是一个CHUNK_NODES个节点的direct ByteBuffer，按需追加，整棵树在堆上只有块数组和几个ByteBuffer对象，
+ *    节点数再多，GC也没有额外的对象需要标记，堆的占用和停顿时间基本不变；
+ * 2. 节点布局(32字节)：key(8) value(8) left(4) right(4) height(1)，其余3字节填充，long字段按8字节对齐；
+ * 3. 删除的节点放回空闲链表(借用left字段作为链表指针)，插入时优先复用；
+ * 4. 没有parent字段，插入、删除向下查找时把路径记录在数组中，再沿路径向上调整，都是迭代实现的。
+ * <p>
+ * 不是线程安全的。堆外内存在树对象不可达后由GC回收ByteBuffer时释放，clear()只清空内容、保留已分配的块。
+ */
+public class OffHeapAVLTree {
+
+    private static final int NODE_SIZE = 32;
+    private static final int NODE_SHIFT = 5;
+    private static final int KEY = 0, VALUE = 8, LEFT = 16, RIGHT = 20, HEIGHT = 24;
+
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_NODES = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_NODES - 1;
+
+    private static final int NIL = 0;
+
+    // n个节点的AVL树高度不超过1.44 * lgn，int范围内的节点数不会超过45层
+    private static final int MAX_HEIGHT = 48;
+
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+    private int chunkCount;
+
+    // 下一个从未使用过的编号，以及空闲链表的头
+    private int nextFree = 1;
+    private int freeList = NIL;
+
+    private int root = NIL;
+    private int size;
+
+    // 向下查找时经过的节点
+    private final int[] path = new int[MAX_HEIGHT];
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 树的高度，空树为0，只有根节点为1
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * 已分配的堆外内存字节数
+     */
+    public long offHeapBytes() {
+        return (long) chunkCount * CHUNK_NODES * NODE_SIZE;
+    }
+
+    public void clear() {
+        root = NIL;
+        size = 0;
+        nextFree = 1;
+        freeList = NIL;
+    }
+
+    // =====================================================
+    // 节点字段的读写
+    private ByteBuffer chunk(int node) {
+        return chunks[node >>> CHUNK_BITS];
+    }
+
+    private static int offset(int node) {
+        return (node & CHUNK_MASK) << NODE_SHIFT;
+    }
+
+    private long key(int node) {
+        return chunk(node).getLong(offset(node) + KEY);
+    }
+
+    private long value(int node) {
+        return chunk(node).getLong(offset(node) + VALUE);
+    }
+
+    private int left(int node) {
+        return chunk(node).getInt(offset(node) + LEFT);
+    }
+
+    private int right(int node) {
+        return chunk(node).getInt(offset(node) + RIGHT);
+    }
+
+    private int height(int node) {
+        return node == NIL ? 0 : chunk(node).get(offset(node) + HEIGHT);
+    }
+
+    private void setKey(int node, long key) {
+        chunk(node).putLong(offset(node) + KEY, key);
+    }
+
+    private void setValue(int node, long value) {
+        chunk(node).putLong(offset(node) + VALUE, value);
+    }
+
+    private void setLeft(int node, int left) {
+        chunk(node).putInt(offset(node) + LEFT, left);
+    }
+
+    private void setRight(int node, int right) {
+        chunk(node).putInt(offset(node) + RIGHT, right);
+    }
+
+    private void updateHeight(int node) {
+        int h = Math.max(height(left(node)), height(right(node))) + 1;
+        chunk(node).put(offset(node) + HEIGHT, (byte) h);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 节点的分配和回收
+    private int allocate(long key, long value) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left(node);
+        } else {
+            if (nextFree == Integer.MAX_VALUE) throw new IllegalStateException("arena is full");
+            node = nextFree++;
+            if ((node >>> CHUNK_BITS) == chunkCount) addChunk();
+        }
+
+        ByteBuffer buf = chunk(node);
+        int off = offset(node);
+        buf.putLong(off + KEY, key);
+        buf.putLong(off + VALUE, value);
+        buf.putInt(off + LEFT, NIL);
+        buf.putInt(off + RIGHT, NIL);
+        buf.put(off + HEIGHT, (byte) 1);
+        return node;
+    }
+
+    private void free(int node) {
+        setLeft(node, freeList);
+        freeList = node;
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        chunks[chunkCount++] = ByteBuffer.allocateDirect(CHUNK_NODES * NODE_SIZE).order(ByteOrder.nativeOrder());
+    }
+    // =====================================================
+
+    // =====================================================
+    // 查找
+    public boolean containsKey(long key) {
+        return find(key) != NIL;
+    }
+
+    public long get(long key, long defaultValue) {
+        int node = find(key);
+        return node == NIL ? defaultValue : value(node);
+    }
+
+    private int find(long key) {
+        int node = root;
+        while (node != NIL) {
+            long k = key(node);
+            if (key < k)
+                node = left(node);
+            else if (key > k)
+                node = right(node);
+            else
+                return node;
+        }
+        return NIL;
+    }
+
+    public long firstKey() {
+        if (root == NIL) throw new NoSuchElementException();
+        int node = root;
+        while (left(node) != NIL) node = left(node);
+        return key(node);
+    }
+
+    public long lastKey() {
+        if (root == NIL) throw new NoSuchElementException();
+        int node = root;
+        while (right(node) != NIL) node = right(node);
+        return key(node);
+    }
+    // =====================================================
+
+    // =====================================================
+    // 插入
+    /**
+     * 插入或更新，返回key原来是否不存在
+     */
+    public boolean put(long key, long value) {
+        if (root == NIL) {
+            root = allocate(key, value);
+            size = 1;
+            return true;
+        }
+
+        int depth = 0, node = root;
+        while (node != NIL) {
+            path[depth++] = node;
+            long k = key(node);
+            if (key < k) {
+                node = left(node);
+            } else if (key > k) {
+                node = right(node);
+            } else {
+                setValue(node, value);
+                return false;
+            }
+        }
+
+        int added = allocate(key, value);
+        int parent = path[depth - 1];
+        if (key < key(parent))
+            setLeft(parent, added);
+        else
+            setRight(parent, added);
+        size++;
+        rebalance(depth - 1);
+        return true;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 删除
+    /**
+     * 删除key，返回key原来是否存在
+     */
+    public boolean remove(long key) {
+        int depth = 0, node = root;
+        while (node != NIL) {
+            long k = key(node);
+            if (key == k) break;
+            path[depth++] = node;
+            node = key < k ? left(node) : right(node);
+        }
+        if (node == NIL) return false;
+
+        int target = node;
+        if (left(node) != NIL && right(node) != NIL) {
+            // 用后继的内容替换，转化为删除后继(后继没有左子节点)
+            path[depth++] = node;
+            node = right(node);
+            while (left(node) != NIL) {
+                path[depth++] = node;
+                node = left(node);
+            }
+            setKey(target, key(node));
+            setValue(target, value(node));
+        }
+
+        int child = left(node) != NIL ? left(node) : right(node);
+        replaceChild(depth - 1, node, child);
+        free(node);
+        size--;
+        rebalance(depth - 1);
+        return true;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 从path[d]开始向上调整，子树高度与调整前相同时上层不受影响
+    private void rebalance(int d) {
+        for (; d >= 0; d--) {
+            int node = path[d];
+            int oldHeight = height(node);
+            int top = balance(node);
+            if (top != node) replaceChild(d - 1, node, top);
+            if (height(top) == oldHeight) return;
+        }
+    }
+
+    // 把path[d]中指向old的子节点指针改为node，d < 0时node成为根
+    private void replaceChild(int d, int old, int node) {
+        if (d < 0) {
+            root = node;
+        } else {
+            int parent = path[d];
+            if (left(parent) == old)
+                setLeft(parent, node);
+            else
+                setRight(parent, node);
+        }
+    }
+
+    private int balance(int node) {
+        int l = left(node), r = right(node);
+        int diff = height(l) - height(r);
+        if (diff > 1) {
+            if (height(left(l)) >= height(right(l)))
+                return rotateWithLeftChild(node);
+            setLeft(node, rotateWithRightChild(l));
+            return rotateWithLeftChild(node);
+        } else if (diff < -1) {
+            if (height(right(r)) >= height(left(r)))
+                return rotateWithRightChild(node);
+            setRight(node, rotateWithLeftChild(r));
+            return rotateWithRightChild(node);
+        }
+        updateHeight(node);
+        return node;
+    }
+
+    private int rotateWithLeftChild(int node) {
+        int left = left(node);
+        setLeft(node, right(left));
+        setRight(left, node);
+        updateHeight(node);
+        updateHeight(left);
+        return left;
+    }
+
+    private int rotateWithRightChild(int node) {
+        int right = right(node);
+        setRight(node, left(right));
+        setLeft(right, node);
+        updateHeight(node);
+        updateHeight(right);
+        return right;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 区间遍历
+    public interface Visitor {
+        void visit(long key, long value);
+    }
+
+    /**
+     * 按顺序访问[from, to]中的键值对，返回访问的个数。中序遍历，用数组代替递归的栈
+     */
+    public int scan(long from, long to, Visitor visitor) {
+        int[] stack = new int[MAX_HEIGHT];
+        int top = 0, count = 0;
+        int node = root;
+        while (true) {
+            // 只把不小于from的节点压栈，小于from的节点直接走向右子树
+            while (node != NIL) {
+                if (key(node) < from) {
+                    node = right(node);
+                } else {
+                    stack[top++] = node;
+                    node = left(node);
+                }
+            }
+            if (top == 0) return count;
+
+            node = stack[--top];
+            long key = key(node);
+            if (key > to) return count;
+            visitor.visit(key, value(node));
+            count++;
+            node = right(node);
+        }
+    }
+    // =====================================================
+
+}
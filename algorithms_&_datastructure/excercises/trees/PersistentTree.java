@@ -0,0 +1,329 @@
+package com.jr.test.algorithms.trees;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * 不可变(持久化)的AVL树：put/remove不修改原树，只复制从根到被修改节点的路径(o(lgn)个节点)并返回新树，
+ * 其余子树由新旧两个版本共享。
+ * <p>
+ * 1. 树本身就是快照：持有一个PersistentTree的引用即可，o(1)，读取不需要任何锁；
+ * 2. 旧版本不再被引用后，只属于旧版本的节点由GC正常回收；
+ * 3. Store是可变的入口：当前版本保存在AtomicReference中，写操作基于当前版本生成新版本后CAS替换，
+ *    冲突时重试；snapshot()只是一次volatile读。
+ * <p>
+ * 修改操作按树高递归(深度不超过1.44 * lgn)，遍历使用数组栈。不允许null键，除非comparator支持。
+ */
+public final class PersistentTree<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    // n个节点的AVL树高度不超过1.44 * lgn，int范围内的节点数不会超过45层
+    private static final int MAX_HEIGHT = 48;
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final PersistentTree EMPTY = new PersistentTree(null, null);
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private PersistentTree(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentTree<K, V> empty() {
+        return (PersistentTree<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentTree<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentTree<>(comparator, null);
+    }
+
+    public int size() {
+        return null == root ? 0 : root.size;
+    }
+
+    public boolean isEmpty() {
+        return null == root;
+    }
+
+    /**
+     * 树的高度，空树为0，只有根节点为1
+     */
+    public int height() {
+        return height(root);
+    }
+
+    // =====================================================
+    // 查找
+    @SuppressWarnings("unchecked")
+    private int compare(Object k1, K k2) {
+        return null == comparator
+                ? ((Comparable<? super K>) k1).compareTo(k2)
+                : comparator.compare((K) k1, k2);
+    }
+
+    private Node<K, V> find(Object key) {
+        if (null == key && null == comparator) throw new NullPointerException();
+
+        Node<K, V> node = root;
+        while (null != node) {
+            int i = compare(key, node.key);
+            if (i == 0) return node;
+            node = i < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public V get(Object key) {
+        Node<K, V> node = find(key);
+        return null == node ? null : node.value;
+    }
+
+    public boolean containsKey(Object key) {
+        return null != find(key);
+    }
+
+    public K firstKey() {
+        Node<K, V> node = root;
+        if (null == node) throw new NoSuchElementException();
+        while (null != node.left) node = node.left;
+        return node.key;
+    }
+
+    public K lastKey() {
+        Node<K, V> node = root;
+        if (null == node) throw new NoSuchElementException();
+        while (null != node.right) node = node.right;
+        return node.key;
+    }
+
+    /**
+     * 不大于key的最大key，不存在时返回null
+     */
+    public K floorKey(K key) {
+        Node<K, V> node = root, found = null;
+        while (null != node) {
+            int i = compare(key, node.key);
+            if (i == 0) return node.key;
+            if (i > 0) {
+                found = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return null == found ? null : found.key;
+    }
+
+    /**
+     * 不小于key的最小key，不存在时返回null
+     */
+    public K ceilingKey(K key) {
+        Node<K, V> node = root, found = null;
+        while (null != node) {
+            int i = compare(key, node.key);
+            if (i == 0) return node.key;
+            if (i < 0) {
+                found = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return null == found ? null : found.key;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 修改：返回新树，没有变化时返回this
+    public PersistentTree<K, V> put(K key, V value) {
+        if (null == root) compare(key, key);
+        Node<K, V> newRoot = put(root, key, value);
+        return newRoot == root ? this : new PersistentTree<>(comparator, newRoot);
+    }
+
+    private Node<K, V> put(Node<K, V> node, K key, V value) {
+        if (null == node) return new Node<>(key, value, null, null);
+
+        int i = compare(key, node.key);
+        if (i < 0) {
+            Node<K, V> left = put(node.left, key, value);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        } else if (i > 0) {
+            Node<K, V> right = put(node.right, key, value);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        return value == node.value ? node : new Node<>(node.key, value, node.left, node.right);
+    }
+
+    public PersistentTree<K, V> remove(Object key) {
+        if (null == key && null == comparator) throw new NullPointerException();
+        Node<K, V> newRoot = remove(root, key);
+        return newRoot == root ? this : new PersistentTree<>(comparator, newRoot);
+    }
+
+    private Node<K, V> remove(Node<K, V> node, Object key) {
+        if (null == node) return null;
+
+        int i = compare(key, node.key);
+        if (i < 0) {
+            Node<K, V> left = remove(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        } else if (i > 0) {
+            Node<K, V> right = remove(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+
+        if (null == node.left) return node.right;
+        if (null == node.right) return node.left;
+
+        // 用后继代替被删除的节点
+        Node<K, V> min = node.right;
+        while (null != min.left) min = min.left;
+        return balance(min.key, min.value, node.left, removeMin(node.right));
+    }
+
+    private Node<K, V> removeMin(Node<K, V> node) {
+        if (null == node.left) return node.right;
+        return balance(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    // 以key/value为根、left/right为子树构造新节点，左右高度差超过1时旋转(旋转也只创建新节点)
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            Node<K, V> lr = left.right;
+            return new Node<>(lr.key, lr.value,
+                    new Node<>(left.key, left.value, left.left, lr.left),
+                    new Node<>(key, value, lr.right, right));
+        } else if (diff < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            Node<K, V> rl = right.left;
+            return new Node<>(rl.key, rl.value,
+                    new Node<>(key, value, left, rl.left),
+                    new Node<>(right.key, right.value, rl.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return null == node ? 0 : node.height;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 遍历：树不会再改变，遍历期间不需要任何检查
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Map.Entry<K, V> e : this) action.accept(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+            @SuppressWarnings({"rawtypes", "unchecked"})
+            private final Node<K, V>[] stack = new Node[MAX_HEIGHT];
+            private int top = pushLeft(root, 0);
+
+            private int pushLeft(Node<K, V> node, int top) {
+                for (; null != node; node = node.left) stack[top++] = node;
+                return top;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return top > 0;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (top == 0) throw new NoSuchElementException();
+                Node<K, V> node = stack[--top];
+                top = pushLeft(node.right, top);
+                return new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((k, v) -> sb.append(sb.length() > 1 ? ", " : "").append(k).append('=').append(v));
+        return sb.append('}').toString();
+    }
+    // =====================================================
+
+    /**
+     * 可变的入口：writer之间用CAS串行化，reader通过snapshot()拿到某一时刻的完整版本
+     */
+    public static final class Store<K, V> {
+
+        private final AtomicReference<PersistentTree<K, V>> current;
+
+        public Store(PersistentTree<K, V> initial) {
+            this.current = new AtomicReference<>(initial);
+        }
+
+        /**
+         * 当前版本，o(1)
+         */
+        public PersistentTree<K, V> snapshot() {
+            return current.get();
+        }
+
+        public V get(K key) {
+            return current.get().get(key);
+        }
+
+        /**
+         * 返回原来的值
+         */
+        public V put(K key, V value) {
+            while (true) {
+                PersistentTree<K, V> tree = current.get();
+                PersistentTree<K, V> updated = tree.put(key, value);
+                if (updated == tree || current.compareAndSet(tree, updated)) return tree.get(key);
+            }
+        }
+
+        /**
+         * 返回原来的值
+         */
+        public V remove(K key) {
+            while (true) {
+                PersistentTree<K, V> tree = current.get();
+                PersistentTree<K, V> updated = tree.remove(key);
+                if (updated == tree || current.compareAndSet(tree, updated)) return tree.get(key);
+            }
+        }
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+        final V value;
+        final Node<K, V> left, right;
+        final byte height;
+        final int size;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = (byte) (Math.max(height(left), height(right)) + 1);
+            this.size = (null == left ? 0 : left.size) + (null == right ? 0 : right.size) + 1;
+        }
+    }
+
+}
@@ -0,0 +1,351 @@
+package com.jr.test.algorithms.trees;
+
+/**
+ * 与BinarySearchTree接口相同的红黑树，高度不超过2 * lg(n + 1)，有序插入也不会退化成链表。
+ * <p>
+ * 所有操作都是迭代实现的：节点带parent指针，插入/删除后沿parent指针向上修复颜色和旋转，
+ * 查找、print、height也都不使用递归，任何输入都不会导致StackOverflowError。
+ */
+public class RedBlackTree<T extends Comparable<? super T>> {
+
+    private static final boolean RED = false, BLACK = true;
+
+    private RBNode<T> root;
+    private int size;
+
+    public RedBlackTree() {
+        root = null;
+    }
+
+    public void makeEmpty() {
+        root = null;
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // =====================================================
+    public void insert(T value) {
+        RBNode<T> node = root;
+        if (null == node) {
+            value.compareTo(value);
+            root = new RBNode<>(value, null);
+            root.color = BLACK;
+            size = 1;
+            return;
+        }
+
+        RBNode<T> parent;
+        int i;
+        do {
+            parent = node;
+            i = value.compareTo(node.data);
+            if (i < 0)
+                node = node.left;
+            else if (i > 0)
+                node = node.right;
+            else
+                return;
+        } while (null != node);
+
+        RBNode<T> added = new RBNode<>(value, parent);
+        if (i < 0)
+            parent.left = added;
+        else
+            parent.right = added;
+        size++;
+        fixAfterInsertion(added);
+    }
+
+    // 新节点为红色，只可能违反"红节点的子节点为黑色"，叔节点为红时上移问题，为黑时最多旋转两次
+    private void fixAfterInsertion(RBNode<T> x) {
+        while (null != x && x != root && x.parent.color == RED) {
+            RBNode<T> parent = x.parent, grand = parent.parent;
+            if (parent == grand.left) {
+                RBNode<T> uncle = grand.right;
+                if (colorOf(uncle) == RED) {
+                    parent.color = BLACK;
+                    uncle.color = BLACK;
+                    grand.color = RED;
+                    x = grand;
+                } else {
+                    if (x == parent.right) {
+                        x = parent;
+                        rotateLeft(x);
+                        parent = x.parent;
+                    }
+                    parent.color = BLACK;
+                    grand.color = RED;
+                    rotateRight(grand);
+                }
+            } else {
+                RBNode<T> uncle = grand.left;
+                if (colorOf(uncle) == RED) {
+                    parent.color = BLACK;
+                    uncle.color = BLACK;
+                    grand.color = RED;
+                    x = grand;
+                } else {
+                    if (x == parent.left) {
+                        x = parent;
+                        rotateRight(x);
+                        parent = x.parent;
+                    }
+                    parent.color = BLACK;
+                    grand.color = RED;
+                    rotateLeft(grand);
+                }
+            }
+        }
+        root.color = BLACK;
+    }
+    // =====================================================
+
+    // =====================================================
+    public void remove(T value) {
+        RBNode<T> node = find(value);
+        if (null != node) deleteNode(node);
+    }
+
+    private void deleteNode(RBNode<T> p) {
+        size--;
+
+        // 有两个子节点时用后继的值替换，转化为删除后继
+        if (null != p.left && null != p.right) {
+            RBNode<T> s = p.right;
+            while (null != s.left) s = s.left;
+            p.data = s.data;
+            p = s;
+        }
+
+        RBNode<T> replacement = null != p.left ? p.left : p.right;
+        if (null != replacement) {
+            replaceChild(p, replacement);
+            p.left = p.right = p.parent = null;
+            if (p.color == BLACK) fixAfterDeletion(replacement);
+        } else if (null == p.parent) {
+            root = null;
+        } else {
+            // 没有子节点时先把p自己当作"双重黑"节点修复，再摘除
+            if (p.color == BLACK) fixAfterDeletion(p);
+            replaceChild(p, null);
+            p.parent = null;
+        }
+    }
+
+    // x所在的路径少了一个黑节点：兄弟为红时转化为兄弟为黑，兄弟的子节点都为黑时上移问题，否则最多旋转两次
+    private void fixAfterDeletion(RBNode<T> x) {
+        while (x != root && colorOf(x) == BLACK) {
+            RBNode<T> parent = x.parent;
+            if (x == parent.left) {
+                RBNode<T> sib = parent.right;
+                if (colorOf(sib) == RED) {
+                    sib.color = BLACK;
+                    parent.color = RED;
+                    rotateLeft(parent);
+                    sib = parent.right;
+                }
+
+                if (colorOf(sib.left) == BLACK && colorOf(sib.right) == BLACK) {
+                    sib.color = RED;
+                    x = parent;
+                } else {
+                    if (colorOf(sib.right) == BLACK) {
+                        sib.left.color = BLACK;
+                        sib.color = RED;
+                        rotateRight(sib);
+                        sib = parent.right;
+                    }
+                    sib.color = parent.color;
+                    parent.color = BLACK;
+                    sib.right.color = BLACK;
+                    rotateLeft(parent);
+                    x = root;
+                }
+            } else {
+                RBNode<T> sib = parent.left;
+                if (colorOf(sib) == RED) {
+                    sib.color = BLACK;
+                    parent.color = RED;
+                    rotateRight(parent);
+                    sib = parent.left;
+                }
+
+                if (colorOf(sib.right) == BLACK && colorOf(sib.left) == BLACK) {
+                    sib.color = RED;
+                    x = parent;
+                } else {
+                    if (colorOf(sib.left) == BLACK) {
+                        sib.right.color = BLACK;
+                        sib.color = RED;
+                        rotateLeft(sib);
+                        sib = parent.left;
+                    }
+                    sib.color = parent.color;
+                    parent.color = BLACK;
+                    sib.left.color = BLACK;
+                    rotateRight(parent);
+                    x = root;
+                }
+            }
+        }
+        x.color = BLACK;
+    }
+    // =====================================================
+
+    // =====================================================
+    private void rotateLeft(RBNode<T> p) {
+        RBNode<T> r = p.right;
+        p.right = r.left;
+        if (null != r.left) r.left.parent = p;
+        replaceChild(p, r);
+        r.left = p;
+        p.parent = r;
+    }
+
+    private void rotateRight(RBNode<T> p) {
+        RBNode<T> l = p.left;
+        p.left = l.right;
+        if (null != l.right) l.right.parent = p;
+        replaceChild(p, l);
+        l.right = p;
+        p.parent = l;
+    }
+
+    // 用node替换old在父节点中的位置
+    private void replaceChild(RBNode<T> old, RBNode<T> node) {
+        RBNode<T> parent = old.parent;
+        if (null != node) node.parent = parent;
+
+        if (null == parent)
+            root = node;
+        else if (parent.left == old)
+            parent.left = node;
+        else
+            parent.right = node;
+    }
+
+    // null节点视为黑色
+    private static boolean colorOf(RBNode<?> node) {
+        return null == node ? BLACK : node.color;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 中序遍历，沿parent指针找后继
+    public void print() {
+        for (RBNode<T> node = first(); null != node; node = successor(node)) {
+            System.out.println(node.data);
+        }
+    }
+
+    private RBNode<T> first() {
+        RBNode<T> node = root;
+        if (null != node) {
+            while (null != node.left) node = node.left;
+        }
+        return node;
+    }
+
+    private static <T> RBNode<T> successor(RBNode<T> node) {
+        if (null != node.right) {
+            RBNode<T> p = node.right;
+            while (null != p.left) p = p.left;
+            return p;
+        }
+
+        RBNode<T> p = node.parent, child = node;
+        while (null != p && child == p.right) {
+            child = p;
+            p = p.parent;
+        }
+        return p;
+    }
+    // =====================================================
+
+    // =====================================================
+    // 与BinarySearchTree相同，空树为0；按中序遍历的顺序记录每个节点的深度
+    public int height() {
+        int height = 0, depth = 0;
+        RBNode<T> node = root, prev = null;
+        while (null != node) {
+            if (prev == node.parent) {
+                // 第一次到达node
+                depth++;
+                height = Math.max(height, depth);
+                prev = node;
+                if (null != node.left) {
+                    node = node.left;
+                } else if (null != node.right) {
+                    node = node.right;
+                } else {
+                    depth--;
+                    node = node.parent;
+                }
+            } else if (prev == node.left && null != node.right) {
+                prev = node;
+                node = node.right;
+            } else {
+                // 子树已经遍历完，返回父节点
+                depth--;
+                prev = node;
+                node = node.parent;
+            }
+        }
+        return height;
+    }
+    // =====================================================
+
+    // =====================================================
+    public boolean contains(T nodeData) {
+        return null != find(nodeData);
+    }
+
+    private RBNode<T> find(T value) {
+        RBNode<T> node = root;
+        while (null != node) {
+            int i = value.compareTo(node.data);
+            if (i == 0) return node;
+            node = i < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+    // =====================================================
+
+    // =====================================================
+    public T findMax() {
+        if (isEmpty()) return null;
+
+        RBNode<T> node = root;
+        while (null != node.right)
+            node = node.right;
+        return node.data;
+    }
+    // =====================================================
+
+    // =====================================================
+    public T findMin() {
+        if (isEmpty()) return null;
+        return first().data;
+    }
+    // =====================================================
+
+    private static class RBNode<T> {
+
+        boolean color = RED;
+        T data;
+        RBNode<T> left, right, parent;
+
+        public RBNode(T data, RBNode<T> parent) {
+            this.data = data;
+            this.parent = parent;
+        }
+    }
+
+}
@@ -1,11 +1,24 @@
 package com.jr.test.algorithms.trees;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
 /**
  * Created by PengXianglong on 2019/4/15.
  */
 public class Test {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         TreeNode tree = buildTree();
 
 //        TreeTraveller.preOrder(tree);
@@ -27,6 +40,328 @@ public class Test {
 //        System.out.println();
 
 //        TreeTraveller.layer(tree);
+
+//        TreeTraveller.traverse(tree, TreeTraveller.Order.POST, node -> System.out.print(node.getValue() + " "));
+//        System.out.println();
+
+//        deepTraversal(1_000_000);
+
+//        sharedChildTraversal();
+
+//        expressionInterning(200_000);
+
+//        avlTree(10_000_000);
+
+//        redBlackTree(1_000_000);
+
+//        bPlusTreeMemory(1_000_000);
+
+//        skipListStress(8, 10_000);
+
+//        offHeapTree(100_000_000);
+
+//        persistentSnapshot(1_000_000);
+    }
+
+    // n个公式，每个由公共池中的4个子表达式组合而成：对比TreeNode和共享节点的内存，以及逐个求值和记忆化求值的耗时
+    private static void expressionInterning(int n) {
+        Random random = new Random(42);
+        String[] ops = {"+", "-", "*", "/"};
+        String[] names = new String[16];
+        for (int i = 0; i < names.length; i++) names[i] = "x" + i;
+
+        List<List<String>> pool = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            List<String> sub = new ArrayList<>();
+            sub.add(names[random.nextInt(names.length)]);
+            for (int j = 0; j < 8; j++) {
+                sub.add(random.nextInt(4) == 0 ? String.valueOf(1 + random.nextInt(9)) : names[random.nextInt(names.length)]);
+                sub.add(ops[random.nextInt(ops.length)]);
+            }
+            pool.add(sub);
+        }
+        String[][] formulas = new String[n][];
+        for (int i = 0; i < n; i++) {
+            List<String> formula = new ArrayList<>(pool.get(random.nextInt(pool.size())));
+            for (int j = 0; j < 3; j++) {
+                formula.addAll(pool.get(random.nextInt(pool.size())));
+                formula.add(ops[random.nextInt(ops.length)]);
+            }
+            formulas[i] = formula.toArray(new String[0]);
+        }
+
+        long before = usedMemory();
+        TreeNode[] trees = new TreeNode[n];
+        for (int i = 0; i < n; i++) trees[i] = ExpressionTreeBuilder.build(formulas[i]);
+        System.out.println("TreeNode: " + (usedMemory() - before) / n + " bytes/formula");
+
+        before = usedMemory();
+        ExpressionNode.Factory factory = new ExpressionNode.Factory();
+        ExpressionNode[] roots = new ExpressionNode[n];
+        for (int i = 0; i < n; i++) roots[i] = factory.build(formulas[i]);
+        System.out.println("ExpressionNode: " + (usedMemory() - before) / n + " bytes/formula, "
+                + factory.size() + " distinct nodes");
+
+        double[] vars = new double[names.length];
+        Map<String, Double> bindings = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            vars[i] = 1 + random.nextDouble();
+            bindings.put(names[i], vars[i]);
+        }
+
+        long start = System.nanoTime();
+        double sum = 0;
+        for (TreeNode tree : trees) sum += ExpressionTreeBuilder.evaluate(tree, bindings);
+        System.out.println("evaluate each tree: " + (System.nanoTime() - start) / 1_000_000 + "ms, sum " + sum);
+
+        start = System.nanoTime();
+        ExpressionNode.Memo memo = factory.memo(names).bind(vars);
+        double memoSum = 0;
+        for (ExpressionNode root : roots) memoSum += memo.evaluate(root);
+        System.out.println("memoized: " + (System.nanoTime() - start) / 1_000_000 + "ms, sum " + memoSum);
+        check(Double.compare(sum, memoSum) == 0, "memoized sum " + memoSum + " != " + sum);
+    }
+
+    // 深度为n的退化树(左右交替的链)：递归遍历栈溢出，非递归遍历、Morris遍历和并行流的结果与层序一致
+    private static void deepTraversal(int n) {
+        TreeNode root = new TreeNode("0", null, null), node = root;
+        for (int i = 1; i < n; i++) {
+            TreeNode child = new TreeNode(String.valueOf(i), null, null);
+            if ((i & 1) == 0) node.setLeftChild(child);
+            else node.setRightChild(child);
+            node = child;
+        }
+
+        try {
+            TreeTraveller.inOrder(root);
+        } catch (StackOverflowError e) {
+            System.out.println();
+            System.out.println("recursive: StackOverflowError");
+        }
+
+        for (TreeTraveller.Order order : TreeTraveller.Order.values()) {
+            AtomicLong count = new AtomicLong();
+            long start = System.nanoTime();
+            TreeTraveller.traverse(root, order, x -> count.incrementAndGet());
+            System.out.println(order + ": " + count.get() + " nodes, " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+
+        AtomicLong count = new AtomicLong();
+        TreeTraveller.inOrderMorris(root, x -> count.incrementAndGet());
+        System.out.println("morris: " + count.get() + " nodes");
+
+        long sum = TreeTraveller.stream(root, TreeTraveller.Order.IN, true).mapToLong(x -> Long.parseLong(x.getValue())).sum();
+        check(sum == (long) n * (n - 1) / 2, "parallel stream sum " + sum);
+        System.out.println("parallel stream sum: " + sum);
+    }
+
+    // 左右子节点是同一个节点：(x+1)*(x+1)，两个子树都要访问，traverse、iterator和stream的结果一致，
+    // CompiledExpression与ExpressionTreeBuilder.evaluate的结果一致
+    private static void sharedChildTraversal() {
+        TreeNode s = new TreeNode("+", new TreeNode("x", null, null), new TreeNode("1", null, null));
+        TreeNode root = new TreeNode("*", s, s);
+
+        String[] expected = {"* + x 1 + x 1", "x + 1 * x + 1", "x 1 + x 1 + *", "* + + x 1 x 1"};
+        for (TreeTraveller.Order order : TreeTraveller.Order.values()) {
+            StringBuilder visited = new StringBuilder(), iterated = new StringBuilder();
+            TreeTraveller.traverse(root, order, x -> visited.append(visited.length() == 0 ? "" : " ").append(x.getValue()));
+            TreeTraveller.iterator(root, order).forEachRemaining(
+                    x -> iterated.append(iterated.length() == 0 ? "" : " ").append(x.getValue()));
+            String streamed = TreeTraveller.stream(root, order, false).map(TreeNode::getValue)
+                    .collect(Collectors.joining(" "));
+            check(expected[order.ordinal()].equals(visited.toString()), order + " traverse: " + visited);
+            check(visited.toString().equals(iterated.toString()), order + " iterator: " + iterated);
+            check(visited.toString().equals(streamed), order + " stream: " + streamed);
+            System.out.println(order + ": " + visited);
+        }
+
+        // 编译和求值都基于后序遍历，共享的子树同样计算两次(编译时被公共子表达式消除)
+        Map<String, Double> vars = new HashMap<>();
+        vars.put("x", 2.0);
+        double evaluated = ExpressionTreeBuilder.evaluate(root, vars);
+        double compiled = CompiledExpression.compile(root, "x").evaluate(new double[]{2.0});
+        check(evaluated == 9.0 && compiled == evaluated, "compiled " + compiled + ", evaluated " + evaluated);
+        System.out.println("(x+1)*(x+1) at x=2: " + compiled);
+    }
+
+    // 对比整棵树深拷贝和持久化树快照的耗时，快照之后的修改不影响快照
+    private static void persistentSnapshot(int n) {
+        AVLTree<Integer, Integer> map = new AVLTree<>();
+        PersistentTree.Store<Integer, Integer> store = new PersistentTree.Store<>(PersistentTree.<Integer, Integer>empty());
+        for (int i = 0; i < n; i++) {
+            map.put(i, i);
+            store.put(i, i);
+        }
+
+        long start = System.nanoTime();
+        AVLTree<Integer, Integer> copy = new AVLTree<>(map);
+        System.out.println("deep copy: " + (System.nanoTime() - start) / 1000 + "us, size " + copy.size());
+
+        start = System.nanoTime();
+        PersistentTree<Integer, Integer> snapshot = store.snapshot();
+        System.out.println("snapshot: " + (System.nanoTime() - start) / 1000 + "us, size " + snapshot.size());
+
+        for (int i = 0; i < n; i += 2) store.remove(i);
+        System.out.println("after removes: snapshot " + snapshot.size() + ", current " + store.snapshot().size());
+    }
+
+    /**
+     * 随机插入n个key，每插入十分之一打印一次堆占用、GC次数和GC累计耗时。
+     * 1亿个节点需要3.2G堆外内存：-XX:MaxDirectMemorySize=4g
+     */
+    private static void offHeapTree(int n) {
+        OffHeapAVLTree tree = new OffHeapAVLTree();
+        Random random = new Random(42);
+        int step = Math.max(1, n / 10);
+        for (int i = 1; i <= n; i++) {
+            tree.put(random.nextLong(), i);
+            if (i % step == 0) {
+                long gcCount = 0, gcMillis = 0;
+                for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                    gcCount += gc.getCollectionCount();
+                    gcMillis += gc.getCollectionTime();
+                }
+                Runtime runtime = Runtime.getRuntime();
+                System.out.println("size: " + tree.size() + ", height: " + tree.height()
+                        + ", off-heap: " + (tree.offHeapBytes() >> 20) + "M"
+                        + ", heap used: " + ((runtime.totalMemory() - runtime.freeMemory()) >> 20) + "M"
+                        + ", gc: " + gcCount + " times / " + gcMillis + "ms");
+            }
+        }
+    }
+
+    /**
+     * threads个写线程和threads个读线程同时运行millis毫秒。
+     * 每个key只由一个写线程(key % threads)修改，所以put/remove的返回值是确定的，每次都检查；
+     * 读线程检查区间遍历的key严格递增、值与key匹配；结束后检查map与每个写线程记录的内容一致
+     */
+    private static void skipListStress(int threads, long millis) throws InterruptedException {
+        int range = 1 << 16;
+        ConcurrentSkipList<Integer, Integer> map = new ConcurrentSkipList<>();
+        int[][] expected = new int[threads][range];
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicLong operations = new AtomicLong();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers.add(new Thread(() -> {
+                Random random = new Random(id);
+                int[] mine = expected[id];
+                long ops = 0;
+                while (!stop.get()) {
+                    int key = id + threads * random.nextInt(range / threads);
+                    // 值的低16位为key，读线程据此检查；高位不为0，0表示不存在
+                    int value = ((1 + random.nextInt((1 << 15) - 1)) << 16) | key;
+                    boolean put = random.nextBoolean();
+                    Integer old = put ? map.put(key, value) : map.remove(key);
+                    check(mine[key] == 0 ? null == old : null != old && old == mine[key], "key " + key + ": " + old);
+                    mine[key] = put ? value : 0;
+                    check(put == map.containsKey(key), "get after update: " + key);
+                    ops++;
+                }
+                operations.addAndGet(ops);
+            }));
+            workers.add(new Thread(() -> {
+                Random random = new Random(-id);
+                long ops = 0;
+                while (!stop.get()) {
+                    int from = random.nextInt(range), to = from + random.nextInt(1024);
+                    int[] last = {-1};
+                    map.scan(from, to, (key, value) -> {
+                        check(key > last[0] && key >= from && key <= to, "scan order: " + last[0] + ", " + key);
+                        check((value & 0xFFFF) == key, "scan value: " + key + "=" + value);
+                        last[0] = key;
+                    });
+                    ops++;
+                }
+                operations.addAndGet(ops);
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.setUncaughtExceptionHandler((thread, e) -> {
+                error.compareAndSet(null, e);
+                stop.set(true);
+            });
+            worker.start();
+        }
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers) worker.join();
+        if (null != error.get()) throw new IllegalStateException("stress failed", error.get());
+
+        int count = 0;
+        for (int key = 0; key < range; key++) {
+            int value = expected[key % threads][key];
+            Integer actual = map.get(key);
+            check(value == 0 ? null == actual : null != actual && actual == value, "final " + key + ": " + actual);
+            if (value != 0) count++;
+        }
+        int[] scanned = {0};
+        map.scan(null, null, (key, value) -> scanned[0]++);
+        check(scanned[0] == count && map.size() == count, "size: " + map.size() + ", scanned: " + scanned[0]);
+        System.out.println("ok, " + operations.get() + " operations, " + count + " keys");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new IllegalStateException(message);
+    }
+
+    // 随机顺序插入n个key(BinarySearchTree在有序输入上会StackOverflowError)，比较每个key占用的堆内存
+    private static void bPlusTreeMemory(int n) {
+        long[] keys = new long[n];
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) keys[i] = random.nextLong();
+
+        long before = usedMemory();
+        BinarySearchTree<Long> bst = new BinarySearchTree<>();
+        for (long key : keys) bst.insert(key);
+        System.out.println("BinarySearchTree: " + (usedMemory() - before) / n + " bytes/key, height " + bst.height());
+        bst.makeEmpty();
+
+        before = usedMemory();
+        BPlusTree tree = new BPlusTree();
+        tree.putAll(keys, keys);
+        System.out.println("BPlusTree(putAll): " + (usedMemory() - before) / n + " bytes/key, height " + tree.height()
+                + ", estimated " + tree.memoryBytes() / n);
+
+        Arrays.sort(keys);
+        tree = null;
+        before = usedMemory();
+        tree = new BPlusTree();
+        tree.bulkLoad(keys, null);
+        System.out.println("BPlusTree(bulkLoad): " + (usedMemory() - before) / n + " bytes/key, height " + tree.height());
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // 有序插入，BinarySearchTree在这里会退化成链表并StackOverflowError
+    private static void redBlackTree(int n) {
+        RedBlackTree<Integer> tree = new RedBlackTree<>();
+        for (int i = 0; i < n; i++) tree.insert(i);
+        System.out.println("size: " + tree.size() + ", height: " + tree.height()
+                + ", min: " + tree.findMin() + ", max: " + tree.findMax());
+
+        for (int i = 0; i < n; i += 2) tree.remove(i);
+        System.out.println("size: " + tree.size() + ", height: " + tree.height() + ", contains(1): " + tree.contains(1));
+    }
+
+    // 顺序插入n个key再删除一半，高度应保持在1.44 * lgn以内
+    private static void avlTree(int n) {
+        AVLTree<Integer, Integer> map = new AVLTree<>();
+        for (int i = 0; i < n; i++) map.put(i, i);
+        System.out.println("size: " + map.size() + ", height: " + map.height());
+
+        for (int i = 0; i < n; i += 2) map.remove(i);
+        System.out.println("size: " + map.size() + ", height: " + map.height());
+
+        System.out.println(map.subMap(1000, true, 1010, true));
+        System.out.println(map.descendingMap().headMap(n - 10));
     }
 
     private static TreeNode buildTree() {
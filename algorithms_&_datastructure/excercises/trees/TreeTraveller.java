@@ -1,13 +1,24 @@
 package com.jr.test.algorithms.trees;
 
-import java.util.LinkedList;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Created by PengXianglong on 2019/4/15.
  */
 public class TreeTraveller {
 
+    public enum Order {
+        PRE, IN, POST, LEVEL
+    }
+
     public static void preOrder(TreeNode root) {
         if (null != root) {
             print(root);
@@ -17,15 +28,65 @@ public class TreeTraveller {
     }
 
     public static void preOrderStack(TreeNode root) {
-        Stack<TreeNode> stack = new Stack<>();
-        if (root != null) {
-            stack.push(root);
+        traverse(root, Order.PRE, TreeTraveller::print);
+    }
+
+    public static void inOrder(TreeNode root) {
+        if (null != root) {
+            inOrder(root.getLeftChild());
+            print(root);
+            inOrder(root.getRightChild());
         }
+    }
 
-        while (!stack.empty()) {
+    public static void inOrderStack(TreeNode root) {
+        traverse(root, Order.IN, TreeTraveller::print);
+    }
 
+    public static void postOrder(TreeNode root) {
+        if (null != root) {
+            postOrder(root.getLeftChild());
+            postOrder(root.getRightChild());
+            print(root);
+        }
+    }
+
+    public static void postOrderStack(TreeNode root) {
+        traverse(root, Order.POST, TreeTraveller::print);
+    }
+
+    public static void layer(TreeNode root) {
+        traverse(root, Order.LEVEL, TreeTraveller::print);
+    }
+
+    // =====================================================
+    // 非递归遍历，对每个节点调用visitor。前/中/后序使用数组栈，额外空间o(h)；层序使用队列，额外空间o(w)
+    public static void traverse(TreeNode root, Order order, Consumer<? super TreeNode> visitor) {
+        switch (order) {
+            case PRE:
+                preOrder(root, visitor);
+                break;
+            case IN:
+                inOrder(root, visitor);
+                break;
+            case POST:
+                postOrder(root, visitor);
+                break;
+            case LEVEL:
+                layer(root, visitor);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown order: " + order);
+        }
+    }
+
+    private static void preOrder(TreeNode root, Consumer<? super TreeNode> visitor) {
+        NodeStack stack = new NodeStack();
+        if (null != root) stack.push(root);
+
+        while (!stack.isEmpty()) {
             TreeNode node = stack.pop();
-            print(node);
+            visitor.accept(node);
 
             //右结点先入栈，左结点后入栈
             if (node.getRightChild() != null) stack.push(node.getRightChild());
@@ -33,74 +94,307 @@ public class TreeTraveller {
         }
     }
 
-    public static void inOrder(TreeNode root) {
-        if (null != root) {
-            inOrder(root.getLeftChild());
-            print(root);
-            inOrder(root.getRightChild());
+    private static void inOrder(TreeNode root, Consumer<? super TreeNode> visitor) {
+        NodeStack stack = new NodeStack();
+        TreeNode node = root;
+        while (node != null || !stack.isEmpty()) {
+            if (node != null) {
+                stack.push(node);
+                node = node.getLeftChild();
+            } else {
+                node = stack.pop();
+                visitor.accept(node);
+                node = node.getRightChild();
+            }
         }
     }
 
-    public static void inOrderStack(TreeNode root) {
-        Stack<TreeNode> stack = new Stack<>();
+    // 只用一个栈：栈顶节点的右子树为空或者已经进入过时才访问栈顶节点。
+    // 是否进入过右子树记在栈中每一帧的标记里，不能用"刚刚访问的节点是不是右子节点"判断：左右子节点可能是同一个节点
+    private static void postOrder(TreeNode root, Consumer<? super TreeNode> visitor) {
+        NodeStack stack = new NodeStack();
         TreeNode node = root;
         while (node != null || !stack.isEmpty()) {
             if (node != null) {
                 stack.push(node);
                 node = node.getLeftChild();
             } else {
-                node = stack.pop();
-                print(node);
-                node = node.getRightChild();
+                TreeNode top = stack.peek();
+                TreeNode right = top.getRightChild();
+                if (right != null && !stack.isMarked()) {
+                    stack.mark();
+                    node = right;
+                } else {
+                    visitor.accept(top);
+                    stack.pop();
+                }
             }
         }
     }
 
-    public static void postOrder(TreeNode root) {
-        if (null != root) {
-            postOrder(root.getLeftChild());
-            postOrder(root.getRightChild());
-            print(root);
+    private static void layer(TreeNode root, Consumer<? super TreeNode> visitor) {
+        if (root == null) return;
+        ArrayDeque<TreeNode> queue = new ArrayDeque<>();
+        queue.add(root);
+
+        while (!queue.isEmpty()) {
+            TreeNode node = queue.poll();
+            visitor.accept(node);
+            if (node.getLeftChild() != null) queue.add(node.getLeftChild());
+            if (node.getRightChild() != null) queue.add(node.getRightChild());
         }
     }
+    // =====================================================
 
-    public static void postOrderStack(TreeNode root) {
-        Stack<TreeNode> stack1 = new Stack<>();//第一次入栈
-        Stack<TreeNode> stack2 = new Stack<>();//第二次入栈
+    // =====================================================
+    // Morris遍历：借用叶子节点空闲的右指针指向中序后继(线索)，不需要栈，额外空间o(1)；
+    // 遍历过程中会临时修改树，结束时恢复原状，因此遍历期间其它线程不能读这棵树，visitor也不能抛出异常
+    public static void inOrderMorris(TreeNode root, Consumer<? super TreeNode> visitor) {
         TreeNode node = root;
-        while (!stack1.isEmpty() || node != null) {
-            if (node != null) {
-                stack1.push(node);
-                stack2.push(node);
+        while (node != null) {
+            TreeNode left = node.getLeftChild();
+            if (left == null) {
+                visitor.accept(node);
                 node = node.getRightChild();
+                continue;
+            }
+
+            // 左子树中最右的节点，即node的中序前驱
+            TreeNode pre = left;
+            while (pre.getRightChild() != null && pre.getRightChild() != node) pre = pre.getRightChild();
+
+            if (pre.getRightChild() == null) {
+                pre.setRightChild(node);
+                node = left;
             } else {
-                node = stack1.pop();
-                node = node.getLeftChild();
+                // 第二次到达node：左子树已经访问完，拆除线索
+                pre.setRightChild(null);
+                visitor.accept(node);
+                node = node.getRightChild();
+            }
+        }
+    }
+
+    public static void preOrderMorris(TreeNode root, Consumer<? super TreeNode> visitor) {
+        TreeNode node = root;
+        while (node != null) {
+            TreeNode left = node.getLeftChild();
+            if (left == null) {
+                visitor.accept(node);
+                node = node.getRightChild();
+                continue;
+            }
+
+            TreeNode pre = left;
+            while (pre.getRightChild() != null && pre.getRightChild() != node) pre = pre.getRightChild();
+
+            if (pre.getRightChild() == null) {
+                // 第一次到达node时访问
+                visitor.accept(node);
+                pre.setRightChild(node);
+                node = left;
+            } else {
+                pre.setRightChild(null);
+                node = node.getRightChild();
             }
         }
+    }
+    // =====================================================
+
+    // =====================================================
+    // 迭代器和Spliterator
+    public static Iterator<TreeNode> iterator(TreeNode root, Order order) {
+        if (order == Order.LEVEL) return new LayerIterator(root);
+        return Spliterators.iterator(spliterator(root, order));
+    }
 
-        while (!stack2.isEmpty()) {
-            print(stack2.pop());
+    /**
+     * 前/中/后序的Spliterator可以按子树拆分(保持遍历顺序)，层序的Spliterator按批拆分
+     */
+    public static Spliterator<TreeNode> spliterator(TreeNode root, Order order) {
+        if (order == Order.LEVEL) {
+            return Spliterators.spliteratorUnknownSize(new LayerIterator(root), Spliterator.ORDERED | Spliterator.NONNULL);
         }
+        return new TreeSpliterator(root, order);
     }
 
-    public static void layer(TreeNode root) {
-        if (root == null) return;
-        LinkedList<TreeNode> list = new LinkedList<>();
-        list.add(root);
-
-        TreeNode currentNode;
-        while (!list.isEmpty()) {
-            currentNode = list.poll();
-            print(currentNode);
-            if (currentNode.getLeftChild() != null) {
-                list.add(currentNode.getLeftChild());
+    public static Stream<TreeNode> stream(TreeNode root, Order order, boolean parallel) {
+        return StreamSupport.stream(spliterator(root, order), parallel);
+    }
+
+    /**
+     * 待处理的工作保存在数组栈中，每一项是"单个节点"或者"整棵子树"，栈顶是下一个要处理的。
+     * 取出子树时按遍历顺序展开成 节点/左子树/右子树 三项，栈的深度为o(h)。
+     * 拆分时在栈中找离栈底最近的子树：它之上的各项作为前一半交给新的Spliterator，它和它之下的各项留给自己；
+     * 如果这棵子树就在栈顶，先展开再拆分。
+     * 节点总数未知，估计值从Long.MAX_VALUE开始每次拆分减半，并行流据此决定拆分的次数，退化成链的树也不会被拆成o(n)个任务
+     */
+    private static final class TreeSpliterator implements Spliterator<TreeNode> {
+
+        private final Order order;
+        private TreeNode[] nodes;
+        private boolean[] subtree;
+        private int top;
+        private long est;
+
+        TreeSpliterator(TreeNode root, Order order) {
+            this(order, new TreeNode[16], new boolean[16], 0, Long.MAX_VALUE);
+            if (null != root) push(root, true);
+        }
+
+        private TreeSpliterator(Order order, TreeNode[] nodes, boolean[] subtree, int top, long est) {
+            this.order = order;
+            this.nodes = nodes;
+            this.subtree = subtree;
+            this.top = top;
+            this.est = est;
+        }
+
+        private void push(TreeNode node, boolean isSubtree) {
+            if (null == node) return;
+            if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                subtree = Arrays.copyOf(subtree, top * 2);
+            }
+            nodes[top] = node;
+            subtree[top++] = isSubtree;
+        }
+
+        // 按遍历顺序的逆序入栈
+        private void expand(TreeNode node) {
+            TreeNode left = node.getLeftChild(), right = node.getRightChild();
+            switch (order) {
+                case PRE:
+                    push(right, true);
+                    push(left, true);
+                    push(node, false);
+                    break;
+                case IN:
+                    push(right, true);
+                    push(node, false);
+                    push(left, true);
+                    break;
+                default:
+                    push(node, false);
+                    push(right, true);
+                    push(left, true);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super TreeNode> action) {
+            while (top > 0) {
+                TreeNode node = nodes[--top];
+                nodes[top] = null;
+                if (!subtree[top]) {
+                    action.accept(node);
+                    return true;
+                }
+                expand(node);
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<TreeNode> trySplit() {
+            while (true) {
+                int j = 0;
+                while (j < top && !subtree[j]) j++;
+                if (j == top) return null;
+
+                if (j == top - 1) {
+                    TreeNode node = nodes[--top];
+                    nodes[top] = null;
+                    expand(node);
+                    continue;
+                }
+
+                int n = top - j - 1;
+                TreeNode[] prefixNodes = new TreeNode[Math.max(16, n * 2)];
+                boolean[] prefixSubtree = new boolean[prefixNodes.length];
+                System.arraycopy(nodes, j + 1, prefixNodes, 0, n);
+                System.arraycopy(subtree, j + 1, prefixSubtree, 0, n);
+                Arrays.fill(nodes, j + 1, top, null);
+                top = j + 1;
+                est >>>= 1;
+                return new TreeSpliterator(order, prefixNodes, prefixSubtree, n, est);
             }
-            if (currentNode.getRightChild() != null) {
-                list.add(currentNode.getRightChild());
+        }
+
+        @Override
+        public long estimateSize() {
+            return top == 0 ? 0 : est;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    private static final class LayerIterator implements Iterator<TreeNode> {
+
+        private final ArrayDeque<TreeNode> queue = new ArrayDeque<>();
+
+        LayerIterator(TreeNode root) {
+            if (null != root) queue.add(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public TreeNode next() {
+            TreeNode node = queue.poll();
+            if (null == node) throw new NoSuchElementException();
+            if (node.getLeftChild() != null) queue.add(node.getLeftChild());
+            if (node.getRightChild() != null) queue.add(node.getRightChild());
+            return node;
+        }
+    }
+
+    // 可以重复使用的数组栈(java.util.Stack继承自Vector，每个操作都要加锁)
+    private static final class NodeStack {
+
+        private TreeNode[] nodes = new TreeNode[16];
+        // 每一帧的标记，后序遍历用来记录是否已经进入右子树
+        private boolean[] marks = new boolean[16];
+        private int size;
+
+        void push(TreeNode node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                marks = Arrays.copyOf(marks, size * 2);
             }
+            marks[size] = false;
+            nodes[size++] = node;
+        }
+
+        void mark() {
+            marks[size - 1] = true;
+        }
+
+        boolean isMarked() {
+            return marks[size - 1];
+        }
+
+        TreeNode pop() {
+            TreeNode node = nodes[--size];
+            nodes[size] = null;
+            return node;
+        }
+
+        TreeNode peek() {
+            return nodes[size - 1];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
         }
     }
+    // =====================================================
 
     private static void print(TreeNode node) {
         System.out.print(node.getValue() + " ");